@@ -0,0 +1,38 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * JVM stand-in for the platform class, which reads the system properties through native
+ * code. The benchmarks build leaves the original out of the Android classes.
+ */
+public class Build {
+
+    public static final String MANUFACTURER = "LGE";
+    public static final String MODEL = "Nexus 5";
+
+    public static class VERSION {
+
+        public static final String RELEASE = "6.0.1";
+        public static final int SDK_INT = 23;
+    }
+
+    public static class VERSION_CODES {
+
+        public static final int ICE_CREAM_SANDWICH = 14;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import io.lqd.sdk.model.LQDataPoint;
+import io.lqd.sdk.model.LQEvent;
+import io.lqd.sdk.model.LQEventTemplate;
+import io.lqd.sdk.model.LQJsonWriter;
+
+/**
+ * Encoding of the data point built for each tracked event.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DataPointBenchmark {
+
+    private LQEvent mEvent;
+    private LQEventTemplate mTemplate;
+    private Object[] mTemplateValues;
+    private LQDataPoint mDataPoint;
+
+    @Setup
+    public void setUp() {
+        mEvent = Fixtures.event();
+        mTemplate = Fixtures.template();
+        mTemplateValues = Fixtures.templateValues();
+        mDataPoint = new LQDataPoint(Fixtures.user(), Fixtures.device(), mEvent, Fixtures.values(10), new Date());
+        // the device encoding is cached after the first data point
+        mDataPoint.toJSONString();
+    }
+
+    @Benchmark
+    public String eventToJSONObject() {
+        return mEvent.toJSON().toString();
+    }
+
+    @Benchmark
+    public String eventWriteJSON() throws Exception {
+        LQJsonWriter writer = LQJsonWriter.obtain();
+        mEvent.writeJSON(writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String templatedEventWriteJSON() throws Exception {
+        LQEvent event = new LQEvent(mTemplate, mTemplate.checkValues(mTemplateValues, false), new Date());
+        LQJsonWriter writer = LQJsonWriter.obtain();
+        event.writeJSON(writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String dataPointToJSONObject() {
+        return mDataPoint.toJSON().toString();
+    }
+
+    @Benchmark
+    public String dataPointToJSONString() {
+        return mDataPoint.toJSONString();
+    }
+}
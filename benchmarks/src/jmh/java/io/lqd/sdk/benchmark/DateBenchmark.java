@@ -0,0 +1,70 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import io.lqd.sdk.ISO8601Utils;
+import io.lqd.sdk.LiquidTools;
+import io.lqd.sdk.UniqueTime;
+
+/**
+ * Dates are formatted for every event, data point and date attribute.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DateBenchmark {
+
+    private TimeZone mTimeZone;
+    private Date mDate;
+    private String mFormatted;
+
+    @Setup
+    public void setUp() {
+        mTimeZone = TimeZone.getTimeZone("Europe/Lisbon");
+        mDate = new Date();
+        mFormatted = ISO8601Utils.format(mDate, true, mTimeZone);
+    }
+
+    @Benchmark
+    public String iso8601Format() {
+        return ISO8601Utils.format(mDate, true, mTimeZone);
+    }
+
+    @Benchmark
+    public Date iso8601Parse() {
+        return ISO8601Utils.parse(mFormatted);
+    }
+
+    @Benchmark
+    public String dateToString() {
+        return LiquidTools.dateToString(mDate);
+    }
+
+    @Benchmark
+    public Date uniqueTime() {
+        return UniqueTime.newDate();
+    }
+}
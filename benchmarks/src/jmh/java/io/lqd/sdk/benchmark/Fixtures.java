@@ -0,0 +1,138 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk.benchmark;
+
+import android.content.Context;
+
+import org.objenesis.ObjenesisStd;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+
+import io.lqd.sdk.LQLog;
+import io.lqd.sdk.model.LQDevice;
+import io.lqd.sdk.model.LQEvent;
+import io.lqd.sdk.model.LQEventTemplate;
+import io.lqd.sdk.model.LQUser;
+import io.lqd.sdk.model.LQValue;
+import io.lqd.sdk.model.LQVariable;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Objects shared by the benchmarks, close to what a tracked event carries in an app.
+ */
+final class Fixtures {
+
+    static final String TOKEN = "benchmark_token";
+
+    static {
+        // android.util.Log is native, it can't run on the JVM
+        LQLog.setLevel(LQLog.ERROR);
+    }
+
+    private Fixtures() {
+    }
+
+    static HashMap<String, Object> attributes() {
+        HashMap<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("plan", "premium");
+        attributes.put("age", 31);
+        attributes.put("score", 92.5);
+        attributes.put("newsletter", true);
+        attributes.put("signup", new Date(1420070400000L));
+        attributes.put("referrer", "https://example.com/landing?utm_source=mail");
+        return attributes;
+    }
+
+    static LQUser user() {
+        return new LQUser("9C3AB4E2-1B3C-4D5E-8F90-A1B2C3D4E5F6-1432142122", attributes(), true);
+    }
+
+    static LQEvent event() {
+        return new LQEvent("Bought Product", attributes(), new Date());
+    }
+
+    /**
+     * A template with the keys of {@link #attributes()}.
+     */
+    static LQEventTemplate template() {
+        return new LQEventTemplate("Bought Product", new String[] { "plan", "age", "score", "newsletter", "signup", "referrer" }, false);
+    }
+
+    static Object[] templateValues() {
+        return new Object[] { "premium", 31, 92.5, true, new Date(1420070400000L), "https://example.com/landing?utm_source=mail" };
+    }
+
+    /**
+     * The device constructor queries system services that can't run on the JVM,
+     * so the fields are set directly.
+     */
+    static LQDevice device() {
+        LQDevice device = new ObjenesisStd().newInstance(LQDevice.class);
+        HashMap<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("push_token", "APA91bHun4MxP5egoKMwt2KZFBaFUH-1RYqx");
+        set(device, "mAttributes", attributes);
+        set(device, "mVendor", "LGE");
+        set(device, "mDeviceModel", "Nexus 5");
+        set(device, "mSystemVersion", 23);
+        set(device, "mScreenSize", "1080x1776");
+        set(device, "mCarrier", "Vodafone P");
+        set(device, "mInternetConnectivity", "WiFi");
+        set(device, "mUid", "1F2E3D4C-5B6A-4798-8A9B-0C1D2E3F4A5B-1432142122");
+        set(device, "mAppBundle", "io.lqd.example");
+        set(device, "mAppName", "Example");
+        set(device, "mAppVersion", "1.2.0");
+        set(device, "mReleaseVersion", 12);
+        set(device, "mLiquidVersion", "2.1.1");
+        set(device, "mLocale", "en_US");
+        set(device, "mSystemLanguage", "English");
+        return device;
+    }
+
+    static ArrayList<LQValue> values(int count) {
+        ArrayList<LQValue> values = new ArrayList<LQValue>(count);
+        for (int i = 0; i < count; i++) {
+            LQVariable variable = new LQVariable("var" + i, "variable_" + i, LQVariable.STRING_TYPE, "target" + i);
+            values.add(new LQValue("value" + i, "text " + i, variable, false, "target" + i));
+        }
+        return values;
+    }
+
+    static Context context(File filesDir) {
+        Context context = mock(Context.class);
+        when(context.getFilesDir()).thenReturn(filesDir);
+        when(context.getPackageName()).thenReturn("io.lqd.example");
+        return context;
+    }
+
+    private static void set(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk.benchmark;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import io.lqd.sdk.LQJournal;
+import io.lqd.sdk.LQQueuer;
+import io.lqd.sdk.LQRequestFactory;
+import io.lqd.sdk.model.LQDataPoint;
+import io.lqd.sdk.model.LQNetworkRequest;
+
+/**
+ * Queueing data points, which appends them to the journal, replaying the journal of
+ * a full queue and the JSON form of a full queue.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QueueBenchmark {
+
+    private static final int QUEUE_SIZE = 500;
+
+    private File mFilesDir;
+    private LQQueuer mQueuer;
+    private String mDataPoint;
+    private JSONObject mQueueJSON;
+    private File mJournalDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFilesDir = File.createTempFile("liquid", "benchmark");
+        if (!mFilesDir.delete() || !mFilesDir.mkdir()) {
+            throw new IOException("Could not create " + mFilesDir);
+        }
+        mQueuer = new LQQueuer(Fixtures.context(mFilesDir), Fixtures.TOKEN);
+        mDataPoint = new LQDataPoint(Fixtures.user(), Fixtures.device(), Fixtures.event(), Fixtures.values(10), new Date()).toJSONString();
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            mQueuer.addToHttpQueue(LQRequestFactory.createDataPointRequest(mDataPoint));
+        }
+        mQueueJSON = mQueuer.toJSON();
+        mJournalDir = new File(mFilesDir, "replay_journal");
+        LQJournal journal = new LQJournal(mJournalDir);
+        for (LQNetworkRequest request : mQueuer.getQueue()) {
+            journal.append(request);
+        }
+        journal.commit();
+    }
+
+    @TearDown
+    public void tearDown() {
+        delete(mFilesDir);
+    }
+
+    @Benchmark
+    public boolean addToHttpQueue() {
+        // the queue is full, so each new request drops the oldest one
+        return mQueuer.addToHttpQueue(LQRequestFactory.createDataPointRequest(mDataPoint));
+    }
+
+    @Benchmark
+    public ArrayList<LQNetworkRequest> replayJournal() {
+        return new LQJournal(mJournalDir).open();
+    }
+
+    @Benchmark
+    public JSONObject toJSON() {
+        return mQueuer.toJSON();
+    }
+
+    @Benchmark
+    public ArrayList<LQNetworkRequest> fromJSON() {
+        return LQQueuer.fromJSON(mQueueJSON);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
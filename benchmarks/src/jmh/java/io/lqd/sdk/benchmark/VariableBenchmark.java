@@ -0,0 +1,60 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import io.lqd.sdk.model.LQVariableStore;
+
+/**
+ * The lookup behind Liquid.get*Variable, without the Liquid singleton around it.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VariableBenchmark {
+
+    private LQVariableStore mVariables;
+
+    @Setup
+    public void setUp() {
+        mVariables = new LQVariableStore(Fixtures.values(100));
+    }
+
+    @Benchmark
+    public String getStringVariable() {
+        LQVariableStore.Entry entry = mVariables.get("variable_42");
+        if (entry != null && entry.is(LQVariableStore.STRING)) {
+            return entry.getString();
+        }
+        return "fallback";
+    }
+
+    @Benchmark
+    public String getMissingVariable() {
+        LQVariableStore.Entry entry = mVariables.get("missing");
+        if (entry != null && entry.is(LQVariableStore.STRING)) {
+            return entry.getString();
+        }
+        return "fallback";
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.Date;
+import java.util.Random;
+
+import io.lqd.sdk.model.LQNetworkRequest;
+import io.lqd.sdk.model.LQNetworkResponse;
+
+/**
+ * Default {@link LQRetryPolicy}.
+ *
+ * <ul>
+ *     <li>Network failures, timeouts (408) and server errors (5xx) are retried with an
+ *     exponential backoff, half of which is random jitter.</li>
+ *     <li>Throttled requests (429) wait for the <code>Retry-After</code> header, or back off
+ *     when the server did not send one.</li>
+ *     <li>Authentication errors (401, 403) are retried on the next flush.</li>
+ *     <li>Any other client error (4xx) is permanent and the request is dropped.</li>
+ * </ul>
+ * Requests are dropped after the maximum number of tries.
+ */
+public class LQBackoffRetryPolicy implements LQRetryPolicy {
+
+    public static final long DEFAULT_BASE_DELAY = 30 * 1000;
+    public static final long DEFAULT_MAX_DELAY = 30 * 60 * 1000;
+    public static final int DEFAULT_MAX_TRIES = 10;
+
+    private final long mBaseDelay;
+    private final long mMaxDelay;
+    private final int mMaxTries;
+    private final Random mRandom = new Random();
+
+    public LQBackoffRetryPolicy() {
+        this(DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, DEFAULT_MAX_TRIES);
+    }
+
+    /**
+     * @param baseDelay delay before the first retry, in milliseconds
+     * @param maxDelay maximum delay between two tries, in milliseconds
+     * @param maxTries number of failed tries after which a request is dropped
+     */
+    public LQBackoffRetryPolicy(long baseDelay, long maxDelay, int maxTries) {
+        if (baseDelay < 1 || maxDelay < baseDelay || maxTries < 1) {
+            throw new IllegalArgumentException("Invalid retry policy limits");
+        }
+        mBaseDelay = baseDelay;
+        mMaxDelay = maxDelay;
+        mMaxTries = maxTries;
+    }
+
+    @Override
+    public Date nextTry(LQNetworkRequest request, LQNetworkResponse response, Date now) {
+        if (request.getNumberOfTries() >= mMaxTries) {
+            return null;
+        }
+        int code = response.getHttpCode();
+        if (response.hasForbidden()) {
+            return now;
+        }
+        if (code == 429 && response.getRetryAfter() >= 0) {
+            return new Date(now.getTime() + Math.min(response.getRetryAfter(), mMaxDelay));
+        }
+        if (code >= 400 && code < 500 && code != 408 && code != 429) {
+            return null;
+        }
+        return new Date(now.getTime() + backoff(request.getNumberOfTries()));
+    }
+
+    private long backoff(int tries) {
+        long delay = mBaseDelay << Math.min(tries, 30);
+        if (delay <= 0 || delay > mMaxDelay) {
+            delay = mMaxDelay;
+        }
+        long half = delay / 2;
+        return half + (long) (mRandom.nextDouble() * (delay - half));
+    }
+}
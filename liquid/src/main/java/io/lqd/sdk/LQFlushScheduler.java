@@ -0,0 +1,209 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides when the queue is flushed.
+ *
+ * <p>
+ * Instead of ticking at a fixed rate, a single wake-up is scheduled when there
+ * is something to send, or when the next retry is due, and nothing runs while
+ * the queue is idle. A flush that is requested while another one is still
+ * waiting to run is dropped.
+ * </p>
+ *
+ * <p>
+ * The delay starts from the flush interval and grows in background and on
+ * cellular networks. A deep queue is flushed right away. Nothing is scheduled
+ * without connectivity, the next connectivity change does it.
+ * </p>
+ */
+public class LQFlushScheduler {
+
+    public static final String CELLULAR = "Cellular";
+    public static final String NO_CONNECTIVITY = "No Connectivity";
+
+    private static final int DEEP_QUEUE = 50;
+    private static final int BACKGROUND_FACTOR = 30;
+    private static final int CELLULAR_FACTOR = 4;
+    private static final int IDLE_THREAD_TIMEOUT = 10; // seconds
+
+    private final Runnable mFlush;
+    private final AtomicBoolean mFlushPending = new AtomicBoolean(false);
+    private ScheduledThreadPoolExecutor mExecutor;
+    private ScheduledFuture<?> mWakeUp;
+    private Object mWakeUpToken;
+    private long mWakeUpAt;
+    private int mInterval;
+    private boolean mStarted;
+    private boolean mForeground;
+    private String mConnectivity;
+
+    /**
+     * @param flush posts a flush to the Liquid queue
+     */
+    public LQFlushScheduler(Runnable flush, int interval) {
+        mFlush = flush;
+        mInterval = interval;
+    }
+
+    public synchronized int getInterval() {
+        return mInterval;
+    }
+
+    /**
+     * Sets the base flush interval, in seconds. 0 or less disables the automatic flush.
+     */
+    public synchronized void setInterval(int seconds) {
+        mInterval = seconds;
+        cancel();
+    }
+
+    public synchronized void setForeground(boolean foreground) {
+        mStarted = true;
+        mForeground = foreground;
+    }
+
+    public synchronized boolean isForeground() {
+        return mForeground;
+    }
+
+    /**
+     * @param connectivity the connectivity reported by {@link io.lqd.sdk.model.LQDevice}
+     */
+    public synchronized void setConnectivity(String connectivity) {
+        mConnectivity = connectivity;
+        if (NO_CONNECTIVITY.equals(connectivity)) {
+            cancel();
+        }
+    }
+
+    /**
+     * Marks a flush as pending.
+     *
+     * @return false if there's already a flush waiting to run
+     */
+    public boolean requestFlush() {
+        return mFlushPending.compareAndSet(false, true);
+    }
+
+    /**
+     * Must be called when the pending flush starts running.
+     */
+    public void flushStarted() {
+        mFlushPending.set(false);
+    }
+
+    /**
+     * Schedules a flush for <b>depth</b> requests that can be sent now.
+     */
+    public synchronized void scheduleWork(int depth) {
+        long delay = delay(depth);
+        if (delay >= 0) {
+            scheduleAt(System.currentTimeMillis() + delay);
+        }
+    }
+
+    /**
+     * Schedules a flush for a retry that is due at <b>deadline</b>, in milliseconds.
+     */
+    public synchronized void scheduleRetry(long deadline) {
+        long delay = delay(0);
+        if (delay >= 0) {
+            scheduleAt(Math.max(deadline, System.currentTimeMillis() + delay));
+        }
+    }
+
+    /**
+     * Drops the scheduled flush, if any.
+     */
+    public synchronized void cancel() {
+        if (mWakeUp != null) {
+            mWakeUp.cancel(false);
+            mWakeUp = null;
+            mWakeUpToken = null;
+        }
+    }
+
+    /**
+     * @return the delay before the next flush in milliseconds, or -1 if it shouldn't be scheduled
+     */
+    synchronized long delay(int depth) {
+        if (!mStarted || mInterval <= 0 || NO_CONNECTIVITY.equals(mConnectivity)) {
+            return -1;
+        }
+        if (depth >= DEEP_QUEUE) {
+            return 0;
+        }
+        long delay = mInterval * 1000L;
+        if (!mForeground) {
+            delay *= BACKGROUND_FACTOR;
+        }
+        if (CELLULAR.equals(mConnectivity)) {
+            delay *= CELLULAR_FACTOR;
+        }
+        return delay;
+    }
+
+    private void scheduleAt(long when) {
+        if (mWakeUp != null && mWakeUpAt <= when) {
+            return;
+        }
+        cancel();
+        final Object token = new Object();
+        mWakeUpToken = token;
+        mWakeUpAt = when;
+        mWakeUp = executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                wakeUp(token);
+            }
+        }, Math.max(0, when - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void wakeUp(Object token) {
+        synchronized (this) {
+            if (mWakeUpToken != token) {
+                return;
+            }
+            mWakeUp = null;
+        }
+        mFlush.run();
+    }
+
+    private ScheduledThreadPoolExecutor executor() {
+        if (mExecutor == null) {
+            mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "LQFlushScheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            mExecutor.setKeepAliveTime(IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS);
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mExecutor;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.lqd.sdk.model.LQNetworkRequest;
+import io.lqd.sdk.model.LQNetworkResponse;
+
+/**
+ * Sends the queued requests to the Liquid server.
+ *
+ * <p>
+ * Connections are kept alive and pooled by the platform HTTP stack, as long as every
+ * response is fully read (see {@link LQNetworkRequest#sendRequest(String)}).
+ * Up to {@link #getMaxInFlight()} requests are kept in flight at the same time while
+ * the queue is drained. With the default of 1 everything is sent on the calling thread.
+ * </p>
+ */
+public class LQHttpTransport {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1;
+    private static final int IDLE_THREAD_TIMEOUT = 30; // seconds
+
+    private final String mApiToken;
+    private int mMaxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private ThreadPoolExecutor mExecutor;
+
+    public LQHttpTransport(String token) {
+        mApiToken = token;
+    }
+
+    public synchronized int getMaxInFlight() {
+        return mMaxInFlight;
+    }
+
+    public synchronized void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The number of requests in flight must be positive");
+        }
+        if (maxInFlight != mMaxInFlight) {
+            mMaxInFlight = maxInFlight;
+            shutdown();
+        }
+    }
+
+    public LQNetworkResponse send(LQNetworkRequest request) {
+        return request.sendRequest(mApiToken);
+    }
+
+    /**
+     * Sends all the <b>requests</b>, keeping at most {@link #getMaxInFlight()} in flight.
+     *
+     * @return the responses, in the same order as the requests
+     */
+    public ArrayList<LQNetworkResponse> sendAll(List<LQNetworkRequest> requests) {
+        ArrayList<LQNetworkResponse> responses = new ArrayList<LQNetworkResponse>(requests.size());
+        ThreadPoolExecutor executor = requests.size() > 1 ? executor() : null;
+        if (executor == null) {
+            for (LQNetworkRequest request : requests) {
+                responses.add(send(request));
+            }
+            return responses;
+        }
+
+        ArrayList<Future<LQNetworkResponse>> futures = new ArrayList<Future<LQNetworkResponse>>(requests.size());
+        for (final LQNetworkRequest request : requests) {
+            Callable<LQNetworkResponse> call = new Callable<LQNetworkResponse>() {
+                @Override
+                public LQNetworkResponse call() {
+                    return send(request);
+                }
+            };
+            try {
+                futures.add(executor.submit(call));
+            } catch (RejectedExecutionException e) {
+                // The executor was shut down (e.g. by setMaxInFlight) while draining:
+                // the remaining requests are sent on the calling thread.
+                FutureTask<LQNetworkResponse> task = new FutureTask<LQNetworkResponse>(call);
+                task.run();
+                futures.add(task);
+            }
+        }
+        for (Future<LQNetworkResponse> future : futures) {
+            try {
+                responses.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                responses.add(new LQNetworkResponse());
+            } catch (ExecutionException e) {
+                LQLog.error("Request failed: " + e.getCause());
+                responses.add(new LQNetworkResponse());
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Stops the sending threads once the requests already handed to them are sent.
+     * They are created again on the next drain.
+     */
+    public synchronized void shutdown() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+            mExecutor = null;
+        }
+    }
+
+    private synchronized ThreadPoolExecutor executor() {
+        if (mMaxInFlight <= 1) {
+            return null;
+        }
+        if (mExecutor == null) {
+            mExecutor = new ThreadPoolExecutor(mMaxInFlight, mMaxInFlight, IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mExecutor;
+    }
+}
@@ -0,0 +1,540 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import io.lqd.sdk.model.LQNetworkRequest;
+
+/**
+ * Append-only, segmented journal of the queued requests.
+ *
+ * <p>
+ * Every queued request is appended as one length-prefixed record and every
+ * delivered (or dropped) request as a small acknowledge record, so queueing an
+ * event costs a single append instead of rewriting the whole queue. Failed tries
+ * append a small retry record with the number of tries and the backoff.
+ * {@link #commit()} stores the lowest sequence number that is still pending and
+ * deletes the segments that only hold acknowledged requests.
+ * </p>
+ *
+ * <p>
+ * Record layout: <code>[int length][int crc32][byte type][long sequence][payload]</code>,
+ * where <b>length</b> and <b>crc32</b> cover everything after the crc.
+ * Requests are appended with their url, method and retry state, followed by the
+ * body bytes as they are, so the encoded data point isn't escaped again into a
+ * JSON string.
+ * </p>
+ */
+public class LQJournal {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String COMMIT_FILE = "commit";
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final int MAX_SEGMENTS = 8;
+    private static final int HEADER_SIZE = 8;
+    // records longer than this are considered corrupted on replay
+    private static final int MAX_RECORD_SIZE = SEGMENT_SIZE * 4;
+
+    private static final byte RECORD_APPEND = 1;
+    private static final byte RECORD_ACK = 2;
+    private static final byte RECORD_RETRY = 3;
+
+    private final File mDirectory;
+    private final ArrayList<Segment> mSegments = new ArrayList<Segment>();
+    private final IdentityHashMap<LQNetworkRequest, Entry> mEntries = new IdentityHashMap<LQNetworkRequest, Entry>();
+    private FileOutputStream mOutput;
+    private long mNextSequence;
+    private long mCommitted;
+
+    public LQJournal(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Replays the journal from the last commit.
+     *
+     * @return the pending requests, in the order they were appended
+     */
+    public synchronized ArrayList<LQNetworkRequest> open() {
+        closeOutput();
+        mSegments.clear();
+        mEntries.clear();
+        mCommitted = readCommit();
+        mNextSequence = mCommitted;
+
+        LinkedHashMap<Long, LQNetworkRequest> pending = new LinkedHashMap<Long, LQNetworkRequest>();
+        LinkedHashMap<Long, Segment> owners = new LinkedHashMap<Long, Segment>();
+        for (File file : segmentFiles()) {
+            Segment segment = new Segment(file, segmentIndex(file));
+            mSegments.add(segment);
+            replay(segment, pending, owners);
+        }
+
+        ArrayList<LQNetworkRequest> requests = new ArrayList<LQNetworkRequest>(pending.size());
+        for (Map.Entry<Long, LQNetworkRequest> record : pending.entrySet()) {
+            Segment segment = owners.get(record.getKey());
+            segment.mLive++;
+            mEntries.put(record.getValue(), new Entry(record.getKey(), segment));
+            requests.add(record.getValue());
+        }
+        LQLog.infoVerbose("Journal replayed %d requests", requests.size());
+        return requests;
+    }
+
+    /**
+     * Appends a request to the journal. A request too large for a record is not
+     * journaled: it is only kept in memory and doesn't survive a restart.
+     */
+    public synchronized void append(LQNetworkRequest request) {
+        long sequence = mNextSequence++;
+        try {
+            Segment segment = write(RECORD_APPEND, sequence, encode(request));
+            segment.mLive++;
+            mEntries.put(request, new Entry(sequence, segment));
+        } catch (IOException e) {
+            LQLog.error("Could not append request to journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marks a request as delivered, or dropped, so it's not replayed again.
+     */
+    public synchronized void acknowledge(LQNetworkRequest request) {
+        Entry entry = mEntries.remove(request);
+        if (entry == null) {
+            return;
+        }
+        entry.mSegment.mLive--;
+        try {
+            write(RECORD_ACK, entry.mSequence, null);
+        } catch (IOException e) {
+            LQLog.error("Could not acknowledge request in journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records the retry state of a request that failed, so its backoff survives a restart.
+     */
+    public synchronized void retry(LQNetworkRequest request) {
+        Entry entry = mEntries.get(request);
+        if (entry == null) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(20);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        try {
+            payload.writeInt(request.getNumberOfTries());
+            payload.writeLong(request.getLastTry() == null ? -1 : request.getLastTry().getTime());
+            payload.writeLong(request.getNextTry() == null ? -1 : request.getNextTry().getTime());
+            write(RECORD_RETRY, entry.mSequence, bytes.toByteArray());
+        } catch (IOException e) {
+            LQLog.error("Could not record retry in journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Advances the commit offset to the oldest pending request and deletes, or
+     * compacts, the segments that are no longer needed.
+     */
+    public synchronized void commit() {
+        compact();
+        long committed = mNextSequence;
+        for (Entry entry : mEntries.values()) {
+            committed = Math.min(committed, entry.mSequence);
+        }
+        if (committed != mCommitted) {
+            mCommitted = committed;
+            writeCommit(committed);
+        }
+        while (mSegments.size() > 1 && mSegments.get(0).mLive == 0) {
+            Segment segment = mSegments.remove(0);
+            if (!segment.mFile.delete()) {
+                LQLog.infoVerbose("Could not delete journal segment " + segment.mFile.getName());
+            }
+        }
+    }
+
+    /**
+     * Drops every record of the journal.
+     */
+    public synchronized void clear() {
+        closeOutput();
+        mSegments.clear();
+        mEntries.clear();
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mNextSequence = 0;
+        mCommitted = 0;
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Moves the pending requests out of the oldest segment when they are the only
+     * thing keeping the journal from shrinking.
+     */
+    private void compact() {
+        if (mSegments.size() <= MAX_SEGMENTS) {
+            return;
+        }
+        final Segment oldest = mSegments.get(0);
+        final ArrayList<LQNetworkRequest> moved = new ArrayList<LQNetworkRequest>();
+        for (Map.Entry<LQNetworkRequest, Entry> entry : mEntries.entrySet()) {
+            if (entry.getValue().mSegment == oldest) {
+                moved.add(entry.getKey());
+            }
+        }
+        // keep the original order when the requests are replayed
+        Collections.sort(moved, new Comparator<LQNetworkRequest>() {
+            @Override
+            public int compare(LQNetworkRequest lhs, LQNetworkRequest rhs) {
+                long l = mEntries.get(lhs).mSequence;
+                long r = mEntries.get(rhs).mSequence;
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        LQLog.infoVerbose("Compacting journal, moving %d requests", moved.size());
+        for (LQNetworkRequest request : moved) {
+            // append the copy before acknowledging the original, so a crash in between can't lose it
+            Entry original = mEntries.remove(request);
+            original.mSegment.mLive--;
+            append(request);
+            if (!mEntries.containsKey(request)) {
+                original.mSegment.mLive++;
+                mEntries.put(request, original);
+                break;
+            }
+            try {
+                write(RECORD_ACK, original.mSequence, null);
+            } catch (IOException e) {
+                LQLog.error("Could not acknowledge request in journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private Segment write(byte type, long sequence, byte[] payload) throws IOException {
+        int length = 1 + 8 + (payload == null ? 0 : payload.length);
+        if (length > MAX_RECORD_SIZE) {
+            throw new IOException("Record of " + length + " bytes is too large");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + length);
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeInt(length);
+        record.writeInt(0);
+        record.writeByte(type);
+        record.writeLong(sequence);
+        if (payload != null) {
+            record.write(payload);
+        }
+        byte[] data = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data, HEADER_SIZE, length);
+        int checksum = (int) crc.getValue();
+        data[4] = (byte) (checksum >>> 24);
+        data[5] = (byte) (checksum >>> 16);
+        data[6] = (byte) (checksum >>> 8);
+        data[7] = (byte) checksum;
+
+        Segment segment = activeSegment(data.length);
+        mOutput.write(data);
+        segment.mSize += data.length;
+        return segment;
+    }
+
+    private Segment activeSegment(int recordSize) throws IOException {
+        Segment segment = mSegments.isEmpty() ? null : mSegments.get(mSegments.size() - 1);
+        if (segment == null || (segment.mSize > 0 && segment.mSize + recordSize > SEGMENT_SIZE)) {
+            closeOutput();
+            long index = segment == null ? 0 : segment.mIndex + 1;
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                throw new IOException("Could not create " + mDirectory);
+            }
+            segment = new Segment(new File(mDirectory, SEGMENT_PREFIX + index), index);
+            mSegments.add(segment);
+        }
+        if (mOutput == null) {
+            mOutput = new FileOutputStream(segment.mFile, true);
+        }
+        return segment;
+    }
+
+    private void replay(Segment segment, Map<Long, LQNetworkRequest> pending, Map<Long, Segment> owners) {
+        DataInputStream input = null;
+        long valid = 0;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.mFile)));
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = input.readInt();
+                if (length < 9 || length > MAX_RECORD_SIZE) {
+                    throw new IOException("Corrupted record length " + length);
+                }
+                byte[] body = new byte[length];
+                input.readFully(body);
+                crc.reset();
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    throw new IOException("Corrupted record checksum");
+                }
+                valid += HEADER_SIZE + length;
+
+                long sequence = readLong(body, 1);
+                mNextSequence = Math.max(mNextSequence, sequence + 1);
+                if (body[0] == RECORD_APPEND && sequence >= mCommitted) {
+                    LQNetworkRequest request = decode(body);
+                    if (request != null) {
+                        pending.put(sequence, request);
+                        owners.put(sequence, segment);
+                    }
+                } else if (body[0] == RECORD_ACK) {
+                    pending.remove(sequence);
+                    owners.remove(sequence);
+                } else if (body[0] == RECORD_RETRY && pending.containsKey(sequence) && length >= 9 + 20) {
+                    long lastTry = readLong(body, 13);
+                    long nextTry = readLong(body, 21);
+                    pending.get(sequence).setRetryState(readInt(body, 9),
+                            lastTry < 0 ? null : new Date(lastTry), nextTry < 0 ? null : new Date(nextTry));
+                }
+            }
+        } catch (IOException e) {
+            LQLog.error("Journal segment " + segment.mFile.getName() + " is truncated, dropping its tail");
+            truncate(segment.mFile, valid);
+        } finally {
+            try {
+                if (input != null)
+                    input.close();
+            } catch (IOException e) {}
+        }
+        segment.mSize = valid;
+    }
+
+    private static byte[] encode(LQNetworkRequest request) throws IOException {
+        String json = request.getJSON();
+        byte[] body = json == null ? null : json.getBytes("UTF-8");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + (body == null ? 0 : body.length));
+        DataOutputStream payload = new DataOutputStream(bytes);
+        writeString(payload, request.getUrl());
+        writeString(payload, request.getHttpMethod());
+        payload.writeInt(request.getNumberOfTries());
+        payload.writeLong(request.getLastTry() == null ? -1 : request.getLastTry().getTime());
+        payload.writeLong(request.getNextTry() == null ? -1 : request.getNextTry().getTime());
+        payload.writeBoolean(body != null);
+        if (body != null) {
+            payload.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static LQNetworkRequest decode(byte[] body) {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(body, 9, body.length - 9);
+        DataInputStream input = new DataInputStream(bytes);
+        try {
+            String url = readString(input);
+            String method = readString(input);
+            int tries = input.readInt();
+            long lastTry = input.readLong();
+            long nextTry = input.readLong();
+            String json = null;
+            if (input.readBoolean()) {
+                // the rest of the record is the body
+                int offset = body.length - bytes.available();
+                json = new String(body, offset, body.length - offset, "UTF-8");
+            }
+            LQNetworkRequest request = new LQNetworkRequest(url, method, json);
+            request.setRetryState(tries, lastTry < 0 ? null : new Date(lastTry), nextTry < 0 ? null : new Date(nextTry));
+            return request;
+        } catch (IOException e) {
+            LQLog.error("Could not read request from journal");
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void truncate(File file, long length) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(length);
+        } catch (IOException e) {
+            LQLog.error("Could not truncate journal segment " + file.getName());
+        } finally {
+            try {
+                if (raf != null)
+                    raf.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    private File[] segmentFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        ArrayList<File> segments = new ArrayList<File>();
+        for (File file : files) {
+            if (file.getName().startsWith(SEGMENT_PREFIX)) {
+                segments.add(file);
+            }
+        }
+        File[] sorted = segments.toArray(new File[segments.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = segmentIndex(lhs);
+                long r = segmentIndex(rhs);
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        return sorted;
+    }
+
+    private static long segmentIndex(File file) {
+        try {
+            return Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private long readCommit() {
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new FileInputStream(new File(mDirectory, COMMIT_FILE)));
+            return input.readLong();
+        } catch (IOException e) {
+            return 0;
+        } finally {
+            try {
+                if (input != null)
+                    input.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    private void writeCommit(long committed) {
+        File temp = new File(mDirectory, COMMIT_FILE + ".tmp");
+        DataOutputStream output = null;
+        try {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                throw new IOException("Could not create " + mDirectory);
+            }
+            output = new DataOutputStream(new FileOutputStream(temp));
+            output.writeLong(committed);
+            output.close();
+            output = null;
+            if (!temp.renameTo(new File(mDirectory, COMMIT_FILE))) {
+                throw new IOException("Could not rename " + temp);
+            }
+        } catch (IOException e) {
+            LQLog.error("Could not write journal commit: " + e.getMessage());
+        } finally {
+            try {
+                if (output != null)
+                    output.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    private void closeOutput() {
+        try {
+            if (mOutput != null)
+                mOutput.close();
+        } catch (IOException e) {}
+        mOutput = null;
+    }
+
+    private static class Segment {
+        private final File mFile;
+        private final long mIndex;
+        private long mSize;
+        private int mLive;
+
+        Segment(File file, long index) {
+            mFile = file;
+            mIndex = index;
+            mSize = file.length();
+        }
+    }
+
+    private static class Entry {
+        private final long mSequence;
+        private final Segment mSegment;
+
+        Entry(long sequence, Segment segment) {
+            mSequence = sequence;
+            mSegment = segment;
+        }
+    }
+}
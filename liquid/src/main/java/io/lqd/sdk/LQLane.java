@@ -0,0 +1,157 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named executor that keeps track of how long tasks wait before they run.
+ *
+ * <p>
+ * A lane with a single thread runs its tasks one at a time, in the order they were
+ * submitted. Idle threads are stopped and created again when new work arrives.
+ * </p>
+ */
+public class LQLane implements Executor {
+
+    private static final int IDLE_THREAD_TIMEOUT = 30; // seconds
+
+    private final String mName;
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicLong mExecuted = new AtomicLong();
+    private final AtomicLong mTotalWait = new AtomicLong();
+    private final AtomicLong mMaxWait = new AtomicLong();
+
+    public LQLane(String name, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A lane needs at least one thread");
+        }
+        mName = name;
+        mExecutor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new LaneThreadFactory(name));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        final long queuedAt = System.nanoTime();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                recordWait(System.nanoTime() - queuedAt);
+                command.run();
+            }
+        });
+    }
+
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * @return the queue wait statistics of this lane since it was created
+     */
+    public Stats getStats() {
+        return new Stats(mName, mExecuted.get(), mExecutor.getQueue().size(), mTotalWait.get(), mMaxWait.get());
+    }
+
+    private void recordWait(long wait) {
+        mExecuted.incrementAndGet();
+        mTotalWait.addAndGet(wait);
+        long max = mMaxWait.get();
+        while (wait > max && !mMaxWait.compareAndSet(max, wait)) {
+            max = mMaxWait.get();
+        }
+    }
+
+    /**
+     * Snapshot of the time tasks spent waiting in a lane before they started running.
+     */
+    public static class Stats {
+
+        private final String mName;
+        private final long mExecuted;
+        private final int mPending;
+        private final long mTotalWait;
+        private final long mMaxWait;
+
+        Stats(String name, long executed, int pending, long totalWait, long maxWait) {
+            mName = name;
+            mExecuted = executed;
+            mPending = pending;
+            mTotalWait = totalWait;
+            mMaxWait = maxWait;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return the number of tasks that started running
+         */
+        public long getExecutedCount() {
+            return mExecuted;
+        }
+
+        /**
+         * @return the number of tasks waiting to run
+         */
+        public int getPendingCount() {
+            return mPending;
+        }
+
+        public double getAverageWaitMillis() {
+            return mExecuted == 0 ? 0 : mTotalWait / (mExecuted * 1e6);
+        }
+
+        public double getMaxWaitMillis() {
+            return mMaxWait / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return mName + ": " + mExecuted + " executed, " + mPending + " pending, wait avg "
+                    + getAverageWaitMillis() + "ms max " + getMaxWaitMillis() + "ms";
+        }
+    }
+
+    private static class LaneThreadFactory implements ThreadFactory {
+
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        LaneThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "Liquid-" + mName + "-" + mCount.incrementAndGet());
+        }
+    }
+}
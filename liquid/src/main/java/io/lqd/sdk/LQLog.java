@@ -18,9 +18,15 @@ package io.lqd.sdk;
 
 import android.util.Log;
 
+import java.util.Locale;
+
+/**
+ * Logging of the SDK. Messages below the current level are discarded, the others
+ * are passed to each {@link LQLogSink}, by default only {@link #LOGCAT}.
+ */
 public class LQLog {
 
-    private static int LOG_LEVEL = 2;
+    private static volatile int LOG_LEVEL = 2;
 
     public static final int PATHS = 7;
     public static final int HTTP = 6;
@@ -30,6 +36,36 @@ public class LQLog {
     public static final int WARNING = 2;
     public static final int ERROR = 1;
 
+    /**
+     * Writes the messages to logcat, under the {@link Liquid#TAG_LIQUID} tag.
+     */
+    public static final LQLogSink LOGCAT = new LQLogSink() {
+        @Override
+        public void log(int level, String message) {
+            switch (level) {
+                case PATHS:
+                case HTTP:
+                    Log.d(Liquid.TAG_LIQUID, message);
+                    break;
+                case DATA:
+                    Log.v(Liquid.TAG_LIQUID, message);
+                    break;
+                case INFO_VERBOSE:
+                case INFO:
+                    Log.i(Liquid.TAG_LIQUID, message);
+                    break;
+                case WARNING:
+                    Log.w(Liquid.TAG_LIQUID, message);
+                    break;
+                default:
+                    Log.e(Liquid.TAG_LIQUID, message);
+                    break;
+            }
+        }
+    };
+
+    private static volatile LQLogSink[] mSinks = { LOGCAT };
+
     /**
      * Changes the current Log level (Debugging proposes)
      * @param level LogLevel
@@ -48,46 +84,192 @@ public class LQLog {
         return LOG_LEVEL;
     }
 
+    /**
+     * Checks if messages of the given level are logged, to skip building
+     * messages that would be discarded.
+     * @param level LogLevel
+     * @return true if the messages of the level are logged
+     */
+    public static boolean isLoggable(int level) {
+        return LOG_LEVEL >= level;
+    }
+
+    /**
+     * Adds a sink that receives the messages of the current level and above.
+     * @param sink LQLogSink
+     */
+    public static synchronized void addSink(LQLogSink sink) {
+        LQLogSink[] sinks = mSinks;
+        for (LQLogSink current : sinks) {
+            if (current == sink) {
+                return;
+            }
+        }
+        LQLogSink[] added = new LQLogSink[sinks.length + 1];
+        System.arraycopy(sinks, 0, added, 0, sinks.length);
+        added[sinks.length] = sink;
+        mSinks = added;
+    }
+
+    /**
+     * Removes a sink, including {@link #LOGCAT} to stop writing to logcat.
+     * @param sink LQLogSink
+     */
+    public static synchronized void removeSink(LQLogSink sink) {
+        LQLogSink[] sinks = mSinks;
+        for (int i = 0; i < sinks.length; i++) {
+            if (sinks[i] == sink) {
+                LQLogSink[] removed = new LQLogSink[sinks.length - 1];
+                System.arraycopy(sinks, 0, removed, 0, i);
+                System.arraycopy(sinks, i + 1, removed, i, sinks.length - i - 1);
+                mSinks = removed;
+                return;
+            }
+        }
+    }
+
     public static void paths(String message) {
         if(LOG_LEVEL >= PATHS) {
-            Log.d(Liquid.TAG_LIQUID, message);
+            log(PATHS, message);
+        }
+    }
+
+    public static void paths(String format, Object arg) {
+        if(LOG_LEVEL >= PATHS) {
+            log(PATHS, format(format, arg));
+        }
+    }
+
+    public static void paths(String format, Object arg1, Object arg2) {
+        if(LOG_LEVEL >= PATHS) {
+            log(PATHS, format(format, arg1, arg2));
         }
     }
 
     public static void http(String message) {
         if(LOG_LEVEL >= HTTP) {
-            Log.d(Liquid.TAG_LIQUID, message);
+            log(HTTP, message);
+        }
+    }
+
+    public static void http(String format, Object arg) {
+        if(LOG_LEVEL >= HTTP) {
+            log(HTTP, format(format, arg));
+        }
+    }
+
+    public static void http(String format, Object arg1, Object arg2) {
+        if(LOG_LEVEL >= HTTP) {
+            log(HTTP, format(format, arg1, arg2));
         }
     }
 
     public static void data(String message) {
         if(LOG_LEVEL >= DATA) {
-            Log.v(Liquid.TAG_LIQUID, message);
+            log(DATA, message);
+        }
+    }
+
+    public static void data(String format, Object arg) {
+        if(LOG_LEVEL >= DATA) {
+            log(DATA, format(format, arg));
+        }
+    }
+
+    public static void data(String format, Object arg1, Object arg2) {
+        if(LOG_LEVEL >= DATA) {
+            log(DATA, format(format, arg1, arg2));
         }
     }
 
     public static void infoVerbose(String message) {
         if(LOG_LEVEL >= INFO_VERBOSE) {
-            Log.i(Liquid.TAG_LIQUID, message);
+            log(INFO_VERBOSE, message);
+        }
+    }
+
+    public static void infoVerbose(String format, Object arg) {
+        if(LOG_LEVEL >= INFO_VERBOSE) {
+            log(INFO_VERBOSE, format(format, arg));
+        }
+    }
+
+    public static void infoVerbose(String format, Object arg1, Object arg2) {
+        if(LOG_LEVEL >= INFO_VERBOSE) {
+            log(INFO_VERBOSE, format(format, arg1, arg2));
         }
     }
 
     public static void warning(String message) {
         if(LOG_LEVEL >= WARNING) {
-            Log.w(Liquid.TAG_LIQUID, message);
+            log(WARNING, message);
+        }
+    }
+
+    public static void warning(String format, Object arg) {
+        if(LOG_LEVEL >= WARNING) {
+            log(WARNING, format(format, arg));
+        }
+    }
+
+    public static void warning(String format, Object arg1, Object arg2) {
+        if(LOG_LEVEL >= WARNING) {
+            log(WARNING, format(format, arg1, arg2));
         }
     }
 
     public static void info(String message) {
         if(LOG_LEVEL >= INFO) {
-            Log.i(Liquid.TAG_LIQUID, message);
+            log(INFO, message);
+        }
+    }
+
+    public static void info(String format, Object arg) {
+        if(LOG_LEVEL >= INFO) {
+            log(INFO, format(format, arg));
+        }
+    }
+
+    public static void info(String format, Object arg1, Object arg2) {
+        if(LOG_LEVEL >= INFO) {
+            log(INFO, format(format, arg1, arg2));
         }
     }
 
     public static void error(String message) {
         if(LOG_LEVEL >= ERROR) {
-            Log.e(Liquid.TAG_LIQUID, message);
+            log(ERROR, message);
         }
     }
 
+    public static void error(String format, Object arg) {
+        if(LOG_LEVEL >= ERROR) {
+            log(ERROR, format(format, arg));
+        }
+    }
+
+    public static void error(String format, Object arg1, Object arg2) {
+        if(LOG_LEVEL >= ERROR) {
+            log(ERROR, format(format, arg1, arg2));
+        }
+    }
+
+    private static void log(int level, String message) {
+        for (LQLogSink sink : mSinks) {
+            try {
+                sink.log(level, message);
+            } catch (RuntimeException e) {
+                // a failing sink must not break the caller, and can't be logged
+            }
+        }
+    }
+
+    /**
+     * Formats the message of the deferred overloads, only called once the level
+     * is known to be logged.
+     */
+    private static String format(String format, Object... args) {
+        return String.format(Locale.US, format, args);
+    }
+
 }
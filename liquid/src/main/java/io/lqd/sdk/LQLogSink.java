@@ -0,0 +1,34 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+/**
+ * Receives the messages logged by the SDK, see {@link LQLog#addSink(LQLogSink)}.
+ *
+ * <p>
+ * Sinks are called on the thread that logs, often the one calling Liquid,
+ * so they should not block nor do any I/O.
+ * </p>
+ */
+public interface LQLogSink {
+
+    /**
+     * @param level one of the {@link LQLog} levels
+     * @param message the formatted message
+     */
+    void log(int level, String message);
+}
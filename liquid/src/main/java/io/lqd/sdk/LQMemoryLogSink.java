@@ -0,0 +1,142 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the last log records in memory, to be dumped on demand, for example
+ * to attach the SDK diagnostics to a bug report.
+ *
+ * <p>
+ * Logging is lock free: it takes a sequence number and stores the record in its
+ * slot, overwriting the oldest one when the buffer is full.
+ * </p>
+ */
+public class LQMemoryLogSink implements LQLogSink {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final AtomicReferenceArray<Record> mRecords;
+    private final AtomicLong mSequence = new AtomicLong();
+    private final int mMask;
+
+    public LQMemoryLogSink() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of records kept, rounded up to a power of two
+     */
+    public LQMemoryLogSink(int capacity) {
+        if (capacity < 1 || capacity > (1 << 20)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^20");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mRecords = new AtomicReferenceArray<Record>(size);
+        mMask = size - 1;
+    }
+
+    public int capacity() {
+        return mRecords.length();
+    }
+
+    @Override
+    public void log(int level, String message) {
+        long sequence = mSequence.getAndIncrement();
+        mRecords.set((int) (sequence & mMask), new Record(sequence, level, System.currentTimeMillis(),
+                Thread.currentThread().getName(), message));
+    }
+
+    /**
+     * @return the records kept, from the oldest to the newest
+     */
+    public ArrayList<Record> getRecords() {
+        long end = mSequence.get();
+        long start = Math.max(0, end - mRecords.length());
+        ArrayList<Record> records = new ArrayList<Record>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            Record record = mRecords.get((int) (sequence & mMask));
+            // skip the slots not written yet, or already overwritten by newer records
+            if (record != null && record.mSequence == sequence) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return the records kept, one per line
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (Record record : getRecords()) {
+            builder.append(record).append('\n');
+        }
+        return builder.toString();
+    }
+
+    public void clear() {
+        for (int i = 0; i < mRecords.length(); i++) {
+            mRecords.set(i, null);
+        }
+    }
+
+    public static class Record {
+
+        private final long mSequence;
+        private final int mLevel;
+        private final long mTimestamp;
+        private final String mThread;
+        private final String mMessage;
+
+        Record(long sequence, int level, long timestamp, String thread, String message) {
+            mSequence = sequence;
+            mLevel = level;
+            mTimestamp = timestamp;
+            mThread = thread;
+            mMessage = message;
+        }
+
+        public int getLevel() {
+            return mLevel;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        public String getThread() {
+            return mThread;
+        }
+
+        public String getMessage() {
+            return mMessage;
+        }
+
+        @Override
+        public String toString() {
+            return LiquidTools.dateToString(new Date(mTimestamp)) + " " + mLevel + " [" + mThread + "] " + mMessage;
+        }
+    }
+}
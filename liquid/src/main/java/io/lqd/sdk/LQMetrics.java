@@ -0,0 +1,323 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters, gauges and latency histograms about the work done by Liquid.
+ *
+ * <p>
+ * Metrics are disabled by default, and recording then costs a volatile read.
+ * Once enabled, they can be pulled with {@link #snapshot()}, or pushed to a
+ * {@link Listener} after each flush of the queue. Latencies are in microseconds.
+ * </p>
+ */
+public class LQMetrics {
+
+    /** Gauge, requests waiting to be sent, including the ones waiting for a retry. */
+    public static final String QUEUE_DEPTH = "queue.depth";
+    /** Histogram, time to add a request to the queue and its journal. */
+    public static final String ENQUEUE_TIME = "queue.enqueue_time";
+    /** Counter, requests dropped because the queue was full. */
+    public static final String DROPPED = "queue.dropped";
+    /** Counter, failed requests scheduled for a retry. */
+    public static final String RETRIED = "queue.retried";
+    /** Counter, failed requests dropped by the retry policy. */
+    public static final String REJECTED = "queue.rejected";
+    /** Histogram, time to flush the queue. */
+    public static final String FLUSH_TIME = "flush.time";
+    /** Counter, bytes of request bodies sent, after compression. */
+    public static final String BYTES_SENT = "http.bytes_sent";
+    /** Counters, one per HTTP status code, or "none" when there was no response. */
+    public static final String HTTP_STATUS = "http.status.";
+    /** Histogram, time spent on the calling thread by track. */
+    public static final String TRACK_TIME = "track.caller_time";
+
+    private static volatile boolean mEnabled = false;
+    private static final ConcurrentHashMap<String, AtomicLong> mCounters = new ConcurrentHashMap<String, AtomicLong>();
+    private static final ConcurrentHashMap<String, AtomicLong> mGauges = new ConcurrentHashMap<String, AtomicLong>();
+    private static final ConcurrentHashMap<String, Histogram> mHistograms = new ConcurrentHashMap<String, Histogram>();
+    private static final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Receives the metrics after each flush of the queue, on the thread that flushed it.
+     */
+    public interface Listener {
+        void onMetrics(Snapshot snapshot);
+    }
+
+    public static boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public static void addListener(Listener listener) {
+        mListeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Clears all the recorded values.
+     */
+    public static void reset() {
+        mCounters.clear();
+        mGauges.clear();
+        mHistograms.clear();
+    }
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        if (mEnabled) {
+            counter(mCounters, name).addAndGet(delta);
+        }
+    }
+
+    public static void setGauge(String name, long value) {
+        if (mEnabled) {
+            counter(mGauges, name).set(value);
+        }
+    }
+
+    public static void record(String name, long micros) {
+        if (mEnabled) {
+            Histogram histogram = mHistograms.get(name);
+            if (histogram == null) {
+                Histogram created = new Histogram();
+                histogram = mHistograms.putIfAbsent(name, created);
+                if (histogram == null) {
+                    histogram = created;
+                }
+            }
+            histogram.record(micros);
+        }
+    }
+
+    /**
+     * @return the start of a measure for {@link #recordSince(String, long)}, 0 if disabled
+     */
+    public static long start() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    public static void recordSince(String name, long start) {
+        if (start != 0) {
+            record(name, (System.nanoTime() - start) / 1000);
+        }
+    }
+
+    public static Snapshot snapshot() {
+        HashMap<String, Long> counters = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> counter : mCounters.entrySet()) {
+            counters.put(counter.getKey(), counter.getValue().get());
+        }
+        HashMap<String, Long> gauges = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> gauge : mGauges.entrySet()) {
+            gauges.put(gauge.getKey(), gauge.getValue().get());
+        }
+        HashMap<String, HistogramSnapshot> histograms = new HashMap<String, HistogramSnapshot>();
+        for (Map.Entry<String, Histogram> histogram : mHistograms.entrySet()) {
+            histograms.put(histogram.getKey(), histogram.getValue().snapshot());
+        }
+        return new Snapshot(counters, gauges, histograms);
+    }
+
+    /**
+     * Notifies the listeners, called after each flush.
+     */
+    static void report() {
+        if (!mEnabled || mListeners.isEmpty()) {
+            return;
+        }
+        Snapshot snapshot = snapshot();
+        for (Listener listener : mListeners) {
+            try {
+                listener.onMetrics(snapshot);
+            } catch (RuntimeException e) {
+                LQLog.error("Metrics listener failed: " + e);
+            }
+        }
+    }
+
+    private static AtomicLong counter(ConcurrentHashMap<String, AtomicLong> counters, String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Values grouped in power of two buckets: bucket i holds the values below 2^i.
+     */
+    private static class Histogram {
+
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(0, value);
+            mBuckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        HistogramSnapshot snapshot() {
+            long[] buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = mBuckets.get(i);
+            }
+            return new HistogramSnapshot(buckets, mCount.get(), mSum.get(), mMax.get());
+        }
+    }
+
+    public static class HistogramSnapshot {
+
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+
+        HistogramSnapshot(long[] buckets, long count, long sum, long max) {
+            mBuckets = buckets;
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public double getMean() {
+            return mCount == 0 ? 0 : (double) mSum / mCount;
+        }
+
+        /**
+         * @param percentile between 0 and 1
+         * @return an upper bound of the <b>percentile</b>, within a factor of two
+         */
+        public long getPercentile(double percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * mCount);
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(mMax, i == 0 ? 0 : (1L << i) - 1);
+                }
+            }
+            return mMax;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + mCount + " mean=" + getMean() + " p50=" + getPercentile(0.5)
+                    + " p99=" + getPercentile(0.99) + " max=" + mMax;
+        }
+    }
+
+    public static class Snapshot {
+
+        private final Map<String, Long> mCounters;
+        private final Map<String, Long> mGauges;
+        private final Map<String, HistogramSnapshot> mHistograms;
+
+        Snapshot(Map<String, Long> counters, Map<String, Long> gauges, Map<String, HistogramSnapshot> histograms) {
+            mCounters = Collections.unmodifiableMap(counters);
+            mGauges = Collections.unmodifiableMap(gauges);
+            mHistograms = Collections.unmodifiableMap(histograms);
+        }
+
+        /**
+         * @return the value of the counter, 0 if nothing was counted
+         */
+        public long getCounter(String name) {
+            Long value = mCounters.get(name);
+            return value == null ? 0 : value;
+        }
+
+        /**
+         * @return the value of the gauge, -1 if it was never set
+         */
+        public long getGauge(String name) {
+            Long value = mGauges.get(name);
+            return value == null ? -1 : value;
+        }
+
+        /**
+         * @return the histogram, or null if nothing was recorded
+         */
+        public HistogramSnapshot getHistogram(String name) {
+            return mHistograms.get(name);
+        }
+
+        public Map<String, Long> getCounters() {
+            return mCounters;
+        }
+
+        public Map<String, Long> getGauges() {
+            return mGauges;
+        }
+
+        public Map<String, HistogramSnapshot> getHistograms() {
+            return mHistograms;
+        }
+
+        @Override
+        public String toString() {
+            return "counters=" + mCounters + " gauges=" + mGauges + " histograms=" + mHistograms;
+        }
+    }
+}
@@ -22,135 +22,474 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.PriorityQueue;
 
 import io.lqd.sdk.model.LQModel;
 import io.lqd.sdk.model.LQNetworkRequest;
 import io.lqd.sdk.model.LQNetworkResponse;
 
+/**
+ * Queue of requests waiting to be sent to Liquid.
+ *
+ * <p>
+ * Requests can be added from any thread while the queue is being flushed. The queue
+ * lock is never held while requests are on the network, and flushes run one at a time.
+ * Requests are sent in the order they were added only when {@link #getMaxInFlight()} is 1
+ * (the default); with more uploads in flight they may reach the server in any order.
+ * </p>
+ */
 public class LQQueuer extends LQModel {
 
     private static final int LIQUID_QUEUE_SIZE_LIMIT = 500;
-    private static final int LIQUID_DEFAULT_FLUSH_INTERVAL = 1;
-    private static final int LIQUID_MAX_NUMBER_OF_TRIES = 10;
+    static final int LIQUID_DEFAULT_FLUSH_INTERVAL = 1;
+    private static final int LIQUID_DEFAULT_BATCH_SIZE = 1;
+    private static final int LIQUID_DEFAULT_BATCH_BYTES = 256 * 1024;
     private static final String PREF_FILE_NAME = "LQPrefs" ;
+    private static final String JOURNAL_DIRECTORY = "LQQueue";
 
-    private int mFlushInterval;
+    private int mBatchSize;
+    private int mBatchBytes;
     private Context mContext;
-    private ArrayList<LQNetworkRequest> mHttpQueue;
-    private Timer mTimer;
+    private LQRingBuffer<LQNetworkRequest> mHttpQueue;
+    private PriorityQueue<DeferredRequest> mDeferred;
+    private long mDeferredCount;
+    private LQRetryPolicy mRetryPolicy;
+    private LQJournal mJournal;
+    private LQHttpTransport mTransport;
+    private LQFlushScheduler mScheduler;
     private String mApiToken;
-    private Liquid mLiquidInstance;
+    private volatile Liquid mLiquidInstance;
+    private final Object mFlushLock = new Object();
 
     public LQQueuer(Context context, String token) {
         this(context, token, new ArrayList<LQNetworkRequest>());
     }
 
     public LQQueuer(Context context, String token, ArrayList<LQNetworkRequest> queue) {
+        this(context, token, new ArrayList<LQNetworkRequest>(), new LQJournal(journalDirectory(context)));
+        mJournal.clear();
+        for (LQNetworkRequest request : queue) {
+            addToHttpQueue(request);
+        }
+    }
+
+    private LQQueuer(Context context, String token, ArrayList<LQNetworkRequest> queue, LQJournal journal) {
         mContext = context;
-        mHttpQueue = queue;
+        mHttpQueue = new LQRingBuffer<LQNetworkRequest>(LIQUID_QUEUE_SIZE_LIMIT);
+        mDeferred = new PriorityQueue<DeferredRequest>(11, DeferredRequest.ORDER);
+        mJournal = journal;
+        Date now = Calendar.getInstance().getTime();
+        for (LQNetworkRequest request : queue) {
+            LQNetworkRequest dropped = enqueue(request, now);
+            if (dropped != null) {
+                mJournal.acknowledge(dropped);
+            }
+        }
+        mRetryPolicy = new LQBackoffRetryPolicy();
         mApiToken = token;
-        mFlushInterval = LIQUID_DEFAULT_FLUSH_INTERVAL;
+        mTransport = new LQHttpTransport(token);
+        mScheduler = new LQFlushScheduler(new Runnable() {
+            @Override
+            public void run() {
+                Liquid liquid = mLiquidInstance;
+                if (liquid != null) {
+                    liquid.flush();
+                }
+            }
+        }, LIQUID_DEFAULT_FLUSH_INTERVAL);
+        mBatchSize = LIQUID_DEFAULT_BATCH_SIZE;
+        mBatchBytes = LIQUID_DEFAULT_BATCH_BYTES;
     }
 
-    public boolean addToHttpQueue(LQNetworkRequest queuedEvent) {
-        mHttpQueue.add(queuedEvent);
-        if (mHttpQueue.size() > LIQUID_QUEUE_SIZE_LIMIT) {
-            mHttpQueue.remove(0);
-            return true;
+    public synchronized boolean addToHttpQueue(LQNetworkRequest queuedEvent) {
+        long start = LQMetrics.start();
+        mJournal.append(queuedEvent);
+        LQNetworkRequest dropped = enqueue(queuedEvent, Calendar.getInstance().getTime());
+        scheduleNextFlush();
+        if (dropped != null) {
+            mJournal.acknowledge(dropped);
+            LQMetrics.increment(LQMetrics.DROPPED);
         }
-        save(mContext, mApiToken);
-        return false;
+        LQMetrics.recordSince(LQMetrics.ENQUEUE_TIME, start);
+        return dropped != null;
+    }
+
+    /**
+     * Requests waiting for a retry are kept apart, ordered by their next try, so flushing
+     * never has to go through them until they are due. When the queue is full the oldest
+     * request is dropped, or the next one to be retried if all of them are waiting.
+     *
+     * @return the dropped request, or null
+     */
+    private LQNetworkRequest enqueue(LQNetworkRequest request, Date now) {
+        LQNetworkRequest dropped = null;
+        if (mHttpQueue.size() + mDeferred.size() >= LIQUID_QUEUE_SIZE_LIMIT) {
+            dropped = mHttpQueue.isEmpty() ? mDeferred.poll().mRequest : mHttpQueue.poll();
+        }
+        if (request.canFlush(now)) {
+            mHttpQueue.offer(request);
+        } else {
+            defer(request);
+        }
+        return dropped;
+    }
+
+    private void defer(LQNetworkRequest request) {
+        mDeferred.add(new DeferredRequest(request, mDeferredCount++));
+    }
+
+    public synchronized void setRetryPolicy(LQRetryPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("The retry policy can't be null");
+        }
+        mRetryPolicy = policy;
+    }
+
+    public synchronized LQRetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
     }
 
     public synchronized void setFlushTimer(int seconds) {
-        stopFlushTimer();
-        mFlushInterval = seconds;
-        startFlushTimer();
+        mScheduler.setInterval(seconds);
+        scheduleNextFlush();
     }
 
     public void setLiquidInstance(Liquid instance) {
         mLiquidInstance = instance;
     }
 
-    public synchronized int getFlushTimer() {
-        return mFlushInterval;
+    public int getFlushTimer() {
+        return mScheduler.getInterval();
+    }
+
+    /**
+     * Tells the flush scheduler about the current connectivity, see {@link LQFlushScheduler}.
+     */
+    public synchronized void setConnectivity(String connectivity) {
+        mScheduler.setConnectivity(connectivity);
+        scheduleNextFlush();
+    }
+
+    /**
+     * Marks a flush as pending, to coalesce flush requests.
+     *
+     * @return false if there is already a flush waiting to run
+     */
+    public boolean requestFlush() {
+        return mScheduler.requestFlush();
     }
 
-    public ArrayList<LQNetworkRequest> getQueue() {
-        return mHttpQueue;
+    /**
+     * Sets how many queued data points can be coalesced into a single upload.
+     * A <b>maxCount</b> of 1 disables batching.
+     *
+     * @param maxCount maximum number of data points per upload
+     * @param maxBytes maximum payload size in bytes per upload
+     */
+    public synchronized void setBatchSize(int maxCount, int maxBytes) {
+        if (maxCount < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Batch limits must be positive");
+        }
+        mBatchSize = maxCount;
+        mBatchBytes = maxBytes;
+    }
+
+    public synchronized int getBatchSize() {
+        return mBatchSize;
+    }
+
+    public synchronized int getBatchBytes() {
+        return mBatchBytes;
+    }
+
+    /**
+     * Sets how many uploads can be in flight at the same time while the queue is flushed.
+     * Sending order is only guaranteed when this is 1.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        mTransport.setMaxInFlight(maxInFlight);
+    }
+
+    public int getMaxInFlight() {
+        return mTransport.getMaxInFlight();
+    }
+
+    /**
+     * @return a snapshot of the queued requests, from the oldest to the newest,
+     * followed by the ones waiting for a retry, in the order they will be retried
+     */
+    public synchronized ArrayList<LQNetworkRequest> getQueue() {
+        ArrayList<LQNetworkRequest> queue = mHttpQueue.toList();
+        DeferredRequest[] deferred = mDeferred.toArray(new DeferredRequest[mDeferred.size()]);
+        Arrays.sort(deferred, DeferredRequest.ORDER);
+        for (DeferredRequest request : deferred) {
+            queue.add(request.mRequest);
+        }
+        return queue;
     }
 
     public void flush() {
-        if (LiquidTools.isNetworkAvailable(mContext)) {
-            Date now = Calendar.getInstance().getTime();
-            ArrayList<LQNetworkRequest> failedQueue = new ArrayList<LQNetworkRequest>();
-            LQNetworkResponse result = new LQNetworkResponse();
-            while (mHttpQueue.size() > 0) {
-                LQNetworkRequest queuedHttp = mHttpQueue.remove(0);
-                if (queuedHttp.canFlush(now)) {
-                    LQLog.infoVerbose("Flushing " + queuedHttp.toString());
-                    result = queuedHttp.sendRequest(mApiToken);
-                    if (!result.hasSucceeded()) {
-                        LQLog.error("HTTP (" + result.getHttpCode() + ") " + queuedHttp.toString());
-                        if (queuedHttp.getNumberOfTries() < LIQUID_MAX_NUMBER_OF_TRIES) {
-                            if (!result.hasForbidden()) {
-                                queuedHttp.setLastTry(now);
+        synchronized (mFlushLock) {
+            long start = LQMetrics.start();
+            mScheduler.flushStarted();
+            if (LiquidTools.isNetworkAvailable(mContext)) {
+                Date now = Calendar.getInstance().getTime();
+                ArrayList<LQNetworkRequest> failedQueue = new ArrayList<LQNetworkRequest>();
+                int batchSize = getBatchSize();
+                int batchBytes = getBatchBytes();
+                int maxInFlight = mTransport.getMaxInFlight();
+                synchronized (this) {
+                    while (!mDeferred.isEmpty() && mDeferred.peek().mRequest.canFlush(now)) {
+                        mHttpQueue.offer(mDeferred.poll().mRequest);
+                    }
+                }
+                while (true) {
+                    // Each upload carries either a single request or a batch of data points
+                    ArrayList<ArrayList<LQNetworkRequest>> uploads = new ArrayList<ArrayList<LQNetworkRequest>>();
+                    ArrayList<LQNetworkRequest> requests = new ArrayList<LQNetworkRequest>();
+                    synchronized (this) {
+                        while (uploads.size() < maxInFlight && !mHttpQueue.isEmpty()) {
+                            LQNetworkRequest queuedHttp = mHttpQueue.poll();
+                            if (!queuedHttp.canFlush(now)) {
+                                failedQueue.add(queuedHttp);
+                                continue;
                             }
-                            queuedHttp.incrementNumberOfTries();
-                            failedQueue.add(queuedHttp);
+                            ArrayList<LQNetworkRequest> upload;
+                            if (batchSize > 1 && isDataPoint(queuedHttp)) {
+                                upload = collectBatch(queuedHttp, now, batchSize, batchBytes, failedQueue);
+                            } else {
+                                upload = new ArrayList<LQNetworkRequest>();
+                                upload.add(queuedHttp);
+                            }
+                            uploads.add(upload);
                         }
                     }
-                } else {
-                    failedQueue.add(queuedHttp);
+                    if (uploads.isEmpty()) {
+                        break;
+                    }
+                    for (ArrayList<LQNetworkRequest> upload : uploads) {
+                        requests.add(uploadRequest(upload));
+                    }
+                    ArrayList<LQNetworkResponse> results = mTransport.sendAll(requests);
+                    for (int i = 0; i < uploads.size(); i++) {
+                        handleResult(uploads.get(i), results.get(i), now, failedQueue);
+                    }
                 }
+                synchronized (this) {
+                    for (LQNetworkRequest failed : failedQueue) {
+                        defer(failed);
+                    }
+                }
+                mJournal.commit();
             }
-            SharedPreferences preferences = mContext.getSharedPreferences(PREF_FILE_NAME, Context.MODE_PRIVATE);
-            preferences.edit().remove("queue").apply();
+            scheduleNextFlush();
+            LQMetrics.recordSince(LQMetrics.FLUSH_TIME, start);
+        }
+        LQMetrics.report();
+    }
+
+    private synchronized void scheduleNextFlush() {
+        LQMetrics.setGauge(LQMetrics.QUEUE_DEPTH, mHttpQueue.size() + mDeferred.size());
+        if (!mHttpQueue.isEmpty()) {
+            mScheduler.scheduleWork(mHttpQueue.size());
+        } else if (!mDeferred.isEmpty()) {
+            mScheduler.scheduleRetry(mDeferred.peek().mNextTry);
+        }
+    }
+
+    /**
+     * Drops every queued request, including the ones waiting for a retry, and the journal.
+     * A flush in progress finishes first, so it can't write its results back afterwards.
+     */
+    public void clear() {
+        synchronized (mFlushLock) {
+            synchronized (this) {
+                mHttpQueue.clear();
+                mDeferred.clear();
+                mJournal.clear();
+                mScheduler.cancel();
+                LQMetrics.setGauge(LQMetrics.QUEUE_DEPTH, 0);
+            }
+        }
+    }
+
+    /**
+     * Takes the data points that follow <b>first</b> in the queue until one of the batch
+     * limits is reached or a request that is not a data point is found.
+     */
+    private ArrayList<LQNetworkRequest> collectBatch(LQNetworkRequest first, Date now, int maxCount, int maxBytes, ArrayList<LQNetworkRequest> failedQueue) {
+        ArrayList<LQNetworkRequest> batch = new ArrayList<LQNetworkRequest>();
+        batch.add(first);
+        int bytes = payloadSize(first);
+        while (batch.size() < maxCount && !mHttpQueue.isEmpty() && isDataPoint(mHttpQueue.peek())) {
+            LQNetworkRequest next = mHttpQueue.peek();
+            if (!next.canFlush(now)) {
+                failedQueue.add(mHttpQueue.poll());
+                continue;
+            }
+            int size = payloadSize(next);
+            if (bytes + size + 1 > maxBytes) {
+                break;
+            }
+            bytes += size + 1;
+            batch.add(mHttpQueue.poll());
+        }
+        return batch;
+    }
 
-            mHttpQueue.addAll(failedQueue);
-            save(mContext, mApiToken);
+    private static LQNetworkRequest uploadRequest(ArrayList<LQNetworkRequest> upload) {
+        if (upload.size() == 1) {
+            LQLog.infoVerbose("Flushing %s", upload.get(0));
+            return upload.get(0);
+        }
+        StringBuilder payload = new StringBuilder();
+        payload.append('[');
+        for (int i = 0; i < upload.size(); i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append(upload.get(i).getJSON());
         }
+        payload.append(']');
+
+        LQLog.infoVerbose("Flushing batch of %d data points", upload.size());
+        return LQRequestFactory.createDataPointBatchRequest(payload.toString());
     }
 
-    public void startFlushTimer() {
-        if (mFlushInterval <= 0 || mTimer != null) {
+    private void handleResult(ArrayList<LQNetworkRequest> upload, LQNetworkResponse result, Date now, ArrayList<LQNetworkRequest> failedQueue) {
+        if (!result.hasSucceeded()) {
+            for (LQNetworkRequest request : upload) {
+                retryLater(request, result, now, failedQueue);
+            }
             return;
         }
-        mTimer = new Timer();
-        TimerTask task = new TimerTask() {
-            @Override
-            public void run() {
-                mLiquidInstance.flush();
+        int[] statuses = null;
+        if (upload.size() > 1) {
+            try {
+                statuses = batchStatuses(result, upload.size());
+            } catch (JSONException e) {
+                LQLog.warning("Could not read the batch response, retrying " + upload.size() + " data points: " + e.getMessage());
+                for (LQNetworkRequest request : upload) {
+                    retryLater(request, result, now, failedQueue);
+                }
+                return;
+            }
+        }
+        for (int i = 0; i < upload.size(); i++) {
+            LQNetworkResponse itemResult = statuses == null ? result : new LQNetworkResponse(statuses[i]);
+            if (itemResult.hasSucceeded()) {
+                mJournal.acknowledge(upload.get(i));
+            } else {
+                retryLater(upload.get(i), itemResult, now, failedQueue);
+            }
+        }
+    }
+
+    private void retryLater(LQNetworkRequest queuedHttp, LQNetworkResponse result, Date now, ArrayList<LQNetworkRequest> failedQueue) {
+        LQLog.error("HTTP (" + result.getHttpCode() + ") " + queuedHttp.toString());
+        Date nextTry = getRetryPolicy().nextTry(queuedHttp, result, now);
+        if (nextTry != null) {
+            queuedHttp.scheduleRetry(now, nextTry);
+            mJournal.retry(queuedHttp);
+            failedQueue.add(queuedHttp);
+            LQMetrics.increment(LQMetrics.RETRIED);
+        } else {
+            LQLog.infoVerbose("Dropping %s", queuedHttp);
+            mJournal.acknowledge(queuedHttp);
+            LQMetrics.increment(LQMetrics.REJECTED);
+        }
+    }
+
+    /**
+     * Reads the per item status codes of a batch upload. The server answers with
+     * <code>{"results":[{"status":201},{"status":422}]}</code>, in the same order as the
+     * uploaded data points.
+     *
+     * @return the status codes, or null if the response has no results and the whole
+     *         batch should be considered delivered
+     * @throws JSONException if the results can't be read or don't match the batch
+     */
+    private static int[] batchStatuses(LQNetworkResponse response, int count) throws JSONException {
+        String body = response.getRequestResponse();
+        if (body == null || body.trim().length() == 0) {
+            return null;
+        }
+        JSONArray results = new JSONObject(body).optJSONArray("results");
+        if (results == null) {
+            return null;
+        }
+        if (results.length() != count) {
+            throw new JSONException("Batch response has " + results.length() + " results for " + count + " data points");
+        }
+        int[] statuses = new int[count];
+        for (int i = 0; i < count; i++) {
+            statuses[i] = results.getJSONObject(i).optInt("status", response.getHttpCode());
+        }
+        return statuses;
+    }
+
+    private static boolean isDataPoint(LQNetworkRequest request) {
+        return LQRequestFactory.LIQUID_DATAPOINT_URL.equals(request.getUrl());
+    }
 
+    private static int payloadSize(LQNetworkRequest request) {
+        String json = request.getJSON();
+        if (json == null) {
+            return 0;
+        }
+        int bytes = 0;
+        for (int i = 0, length = json.length(); i < length; i++) {
+            char c = json.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
             }
-        };
-        mTimer.scheduleAtFixedRate(task, 0,  mFlushInterval * 1000);
+        }
+        return bytes;
+    }
+
+    /**
+     * Flushes at the foreground cadence. The queue is only flushed when it has something to send.
+     */
+    public synchronized void startFlushTimer() {
+        mScheduler.setForeground(true);
+        scheduleNextFlush();
         LQLog.infoVerbose("Started flush timer");
     }
 
+    /**
+     * Flushes at the slower background cadence.
+     */
     public void stopFlushTimer() {
-        if (mTimer != null) {
-            mTimer.cancel();
-            mTimer = null;
-            LQLog.infoVerbose("Stopped flush timer");
-        }
+        mScheduler.setForeground(false);
+        LQLog.infoVerbose("Slowed down flush timer");
     }
 
+    /**
+     * The queue is journaled as it changes, so saving only needs to commit the journal.
+     */
     @Override
     public void save(Context context, String path) {
-        super.save(context, path + ".queue");
+        mJournal.commit();
     }
 
     @Override
     public JSONObject toJSON() {
         JSONArray array = new JSONArray();
 
-        for(LQNetworkRequest request : mHttpQueue) {
+        for(LQNetworkRequest request : getQueue()) {
             array.put(request.toJSON());
         }
         JSONObject json = new JSONObject();
@@ -178,7 +517,49 @@ public class LQQueuer extends LQModel {
     }
 
     public static LQQueuer load(Context context, String path) {
-        return new LQQueuer(context, path, fromJSON(retriveFromFile(context, path  + ".queue")));
+        LQJournal journal = new LQJournal(journalDirectory(context));
+        ArrayList<LQNetworkRequest> queue = journal.open();
+
+        // Migrate the queue saved by older versions in the shared preferences
+        SharedPreferences preferences = context.getSharedPreferences(PREF_FILE_NAME, Context.MODE_PRIVATE);
+        if (preferences.contains("queue")) {
+            for (LQNetworkRequest request : fromJSON(retriveFromFile(context, path + ".queue"))) {
+                if (request != null) {
+                    queue.add(request);
+                    journal.append(request);
+                }
+            }
+            journal.commit();
+            preferences.edit().remove("queue").apply();
+        }
+        return new LQQueuer(context, path, queue, journal);
+    }
+
+    private static File journalDirectory(Context context) {
+        return new File(context.getFilesDir(), JOURNAL_DIRECTORY);
+    }
+
+    private static class DeferredRequest {
+
+        static final Comparator<DeferredRequest> ORDER = new Comparator<DeferredRequest>() {
+            @Override
+            public int compare(DeferredRequest lhs, DeferredRequest rhs) {
+                if (lhs.mNextTry != rhs.mNextTry) {
+                    return lhs.mNextTry < rhs.mNextTry ? -1 : 1;
+                }
+                return lhs.mOrder < rhs.mOrder ? -1 : (lhs.mOrder == rhs.mOrder ? 0 : 1);
+            }
+        };
+
+        final LQNetworkRequest mRequest;
+        final long mNextTry;
+        final long mOrder;
+
+        DeferredRequest(LQNetworkRequest request, long order) {
+            mRequest = request;
+            mNextTry = request.getNextTry() == null ? 0 : request.getNextTry().getTime();
+            mOrder = order;
+        }
     }
 
 }
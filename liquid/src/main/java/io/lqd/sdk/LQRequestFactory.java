@@ -27,6 +27,7 @@ public class LQRequestFactory {
 
     protected static final String LIQUID_SERVER_BASE_URL = "https://api.lqd.io/collect/";
     protected static final String LIQUID_DATAPOINT_URL = LIQUID_SERVER_BASE_URL + "data_points";
+    protected static final String LIQUID_DATAPOINT_BATCH_URL = LIQUID_SERVER_BASE_URL + "data_points/batch";
     protected static final String LIQUID_ALIAS_URL = LIQUID_SERVER_BASE_URL + "aliases";
     protected static final String LIQUID_LQD_PACKAGE_URL = LIQUID_SERVER_BASE_URL + "users/%s/devices/%s/liquid_package";
     protected static final String LIQUID_INAPP_MESSAGES_URL = LIQUID_SERVER_BASE_URL + "users/%s/inapp_messages";
@@ -50,6 +51,10 @@ public class LQRequestFactory {
         return new LQNetworkRequest(LIQUID_DATAPOINT_URL, "POST", datapoint);
     }
 
+    public static LQNetworkRequest createDataPointBatchRequest(String datapoints) {
+        return new LQNetworkRequest(LIQUID_DATAPOINT_BATCH_URL, "POST", datapoints);
+    }
+
     public static LQNetworkRequest requestLiquidPackageRequest(String userId, String userDevice) {
             String url = String.format(LIQUID_LQD_PACKAGE_URL, Uri.encode(userId, "UTF-8"), userDevice);
         return new LQNetworkRequest(url, "GET", null);
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.Date;
+
+import io.lqd.sdk.model.LQNetworkRequest;
+import io.lqd.sdk.model.LQNetworkResponse;
+
+/**
+ * Decides when a request that could not be delivered is tried again.
+ *
+ * @see LQBackoffRetryPolicy
+ */
+public interface LQRetryPolicy {
+
+    /**
+     * Called after <b>request</b> failed with <b>response</b>.
+     *
+     * @param now the time of the failed attempt
+     * @return the earliest time at which the request can be sent again,
+     *         or null to drop it
+     */
+    Date nextTry(LQNetworkRequest request, LQNetworkResponse response, Date now);
+}
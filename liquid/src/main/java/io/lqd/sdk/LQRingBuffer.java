@@ -0,0 +1,178 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Bounded FIFO queue backed by a circular array.
+ *
+ * <p>
+ * Offering, polling, dropping the oldest element and indexed access are all O(1).
+ * When the buffer is full, {@link #offer(Object)} evicts the oldest element to make room.
+ * This class is not thread safe.
+ * </p>
+ */
+public class LQRingBuffer<E> implements Iterable<E> {
+
+    private final Object[] mItems;
+    private int mHead;
+    private int mSize;
+
+    public LQRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        mItems = new Object[capacity];
+    }
+
+    public int capacity() {
+        return mItems.length;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public boolean isFull() {
+        return mSize == mItems.length;
+    }
+
+    /**
+     * Adds an element to the tail of the buffer.
+     *
+     * @return the oldest element if it had to be dropped to make room, null otherwise
+     */
+    public E offer(E item) {
+        E dropped = null;
+        if (isFull()) {
+            dropped = poll();
+        }
+        mItems[slot(mSize)] = item;
+        mSize++;
+        return dropped;
+    }
+
+    /**
+     * Removes and returns the oldest element, or null if the buffer is empty.
+     */
+    public E poll() {
+        if (mSize == 0) {
+            return null;
+        }
+        E item = elementAt(mHead);
+        mItems[mHead] = null;
+        mHead = (mHead + 1) % mItems.length;
+        mSize--;
+        return item;
+    }
+
+    /**
+     * Same as {@link #poll()}, named after what it does on overflow.
+     */
+    public E dropOldest() {
+        return poll();
+    }
+
+    /**
+     * Returns the oldest element without removing it, or null if the buffer is empty.
+     */
+    public E peek() {
+        return mSize == 0 ? null : elementAt(mHead);
+    }
+
+    /**
+     * Returns the element at <b>index</b>, counting from the oldest one.
+     */
+    public E get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+        return elementAt(slot(index));
+    }
+
+    /**
+     * Copies up to <b>max</b> of the oldest elements to <b>out</b>, without removing them.
+     *
+     * @return the number of copied elements
+     */
+    public int peekBatch(int max, List<? super E> out) {
+        int count = Math.min(max, mSize);
+        for (int i = 0; i < count; i++) {
+            out.add(elementAt(slot(i)));
+        }
+        return count;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mItems[slot(i)] = null;
+        }
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * @return a snapshot of the buffer, from the oldest to the newest element
+     */
+    public ArrayList<E> toList() {
+        ArrayList<E> list = new ArrayList<E>(mSize);
+        peekBatch(mSize, list);
+        return list;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int mIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return mIndex < mSize;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(mIndex++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private int slot(int index) {
+        return (mHead + index) % mItems.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E elementAt(int slot) {
+        return (E) mItems[slot];
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Formats dates the same way as {@link ISO8601Utils#format(Date, boolean, TimeZone)}
+ * with milliseconds, without going through a {@link java.util.Calendar}.
+ *
+ * <p>
+ * Each thread formats into its own buffer. The date part is kept while the day doesn't
+ * change, and the time zone offset is cached for each 15 minutes window where it is
+ * constant. Dates before 1900 or after 2199 are left to {@link ISO8601Utils}.
+ * </p>
+ */
+public class LQTimestampFormatter {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long DAY = 24 * 60 * MINUTE;
+    private static final long OFFSET_WINDOW = 15 * MINUTE;
+    private static final long MIN_FAST_TIME = -2208988800000L; // 1900-01-01T00:00:00Z
+    private static final long MAX_FAST_TIME = 7258118400000L; // 2200-01-01T00:00:00Z
+    private static final int TIME_LENGTH = "yyyy-MM-ddThh:mm:ss.sss".length();
+
+    private static final ThreadLocal<LQTimestampFormatter> mFormatters = new ThreadLocal<LQTimestampFormatter>() {
+        @Override
+        protected LQTimestampFormatter initialValue() {
+            return new LQTimestampFormatter();
+        }
+    };
+
+    private final char[] mBuffer = new char[TIME_LENGTH + "+hh:mm".length()];
+    private TimeZone mTimeZone;
+    private long mDay = Long.MIN_VALUE;
+    private long mOffsetWindow = Long.MIN_VALUE;
+    private int mOffset;
+    private int mLength;
+
+    private LQTimestampFormatter() {
+        mBuffer[4] = '-';
+        mBuffer[7] = '-';
+        mBuffer[10] = 'T';
+        mBuffer[13] = ':';
+        mBuffer[16] = ':';
+        mBuffer[19] = '.';
+    }
+
+    public static String format(Date date, TimeZone tz) {
+        return mFormatters.get().format(date.getTime(), tz);
+    }
+
+    private String format(long time, TimeZone tz) {
+        int offset = offset(time, tz);
+        long local = time + offset;
+        if (local < MIN_FAST_TIME || local >= MAX_FAST_TIME) {
+            return ISO8601Utils.format(new Date(time), true, tz);
+        }
+        char[] buffer = mBuffer;
+        long day = floorDiv(local, DAY);
+        if (day != mDay) {
+            mDay = day;
+            writeDate(day);
+        }
+        int millis = (int) (local - day * DAY);
+        write2(11, millis / 3600000);
+        write2(14, millis / 60000 % 60);
+        write2(17, millis / 1000 % 60);
+        int ms = millis % 1000;
+        buffer[20] = (char) ('0' + ms / 100);
+        write2(21, ms % 100);
+        return new String(buffer, 0, mLength);
+    }
+
+    /**
+     * @return the offset of <b>tz</b> at <b>time</b>, with the matching suffix in the buffer
+     */
+    private int offset(long time, TimeZone tz) {
+        long window = floorDiv(time, OFFSET_WINDOW);
+        if (tz == mTimeZone && window == mOffsetWindow) {
+            return mOffset;
+        }
+        int offset = tz.getOffset(time);
+        long start = window * OFFSET_WINDOW;
+        // Only cache the offset if it doesn't change within the window
+        boolean constant = tz.getOffset(start) == offset && tz.getOffset(start + OFFSET_WINDOW - 1) == offset;
+        mTimeZone = tz;
+        mOffsetWindow = constant ? window : Long.MIN_VALUE;
+        if (offset != mOffset || mLength == 0) {
+            mOffset = offset;
+            writeOffset(offset);
+        }
+        return offset;
+    }
+
+    private void writeOffset(int offset) {
+        if (offset == 0) {
+            mBuffer[TIME_LENGTH] = 'Z';
+            mLength = TIME_LENGTH + 1;
+            return;
+        }
+        int hours = Math.abs((offset / (60 * 1000)) / 60);
+        int minutes = Math.abs((offset / (60 * 1000)) % 60);
+        mBuffer[TIME_LENGTH] = offset < 0 ? '-' : '+';
+        write2(TIME_LENGTH + 1, hours);
+        mBuffer[TIME_LENGTH + 3] = ':';
+        write2(TIME_LENGTH + 4, minutes);
+        mLength = TIME_LENGTH + 6;
+    }
+
+    private void writeDate(long epochDay) {
+        // Days to civil date, proleptic Gregorian calendar
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+
+        write2(0, year / 100);
+        write2(2, year % 100);
+        write2(5, month);
+        write2(8, day);
+    }
+
+    private void write2(int index, int value) {
+        mBuffer[index] = (char) ('0' + value / 10);
+        mBuffer[index + 1] = (char) ('0' + value % 10);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            q--;
+        }
+        return q;
+    }
+}
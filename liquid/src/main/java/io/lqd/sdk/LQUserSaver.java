@@ -0,0 +1,123 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+import android.content.Context;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.lqd.sdk.model.LQUser;
+
+/**
+ * Saves the user to disk, coalescing the changes made within a short window.
+ *
+ * <p>
+ * {@link #saveLater(LQUser)} only marks the user as dirty. A single write of the
+ * latest user is made once the delay is over, however many changes happened in
+ * between. {@link #flush()} writes a dirty user right away, on the calling thread.
+ * </p>
+ */
+public class LQUserSaver {
+
+    public static final int DEFAULT_DELAY = 1000; // milliseconds
+    private static final int IDLE_THREAD_TIMEOUT = 10; // seconds
+
+    private final Context mContext;
+    private final String mPath;
+    private final AtomicReference<LQUser> mPending = new AtomicReference<LQUser>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+    private volatile int mDelay;
+    private ScheduledThreadPoolExecutor mExecutor;
+
+    private final Runnable mSave = new Runnable() {
+        @Override
+        public void run() {
+            mScheduled.set(false);
+            flush();
+        }
+    };
+
+    /**
+     * @param path the path given to {@link LQUser#save(Context, String)}
+     */
+    public LQUserSaver(Context context, String path, int delay) {
+        mContext = context;
+        mPath = path;
+        setDelay(delay);
+    }
+
+    public int getDelay() {
+        return mDelay;
+    }
+
+    /**
+     * Sets how long changes are coalesced before the user is written, in milliseconds.
+     */
+    public void setDelay(int delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("The save delay can't be negative");
+        }
+        mDelay = delay;
+    }
+
+    /**
+     * Marks <b>user</b> as the one to write, replacing any user still waiting to be written.
+     */
+    public void saveLater(LQUser user) {
+        mPending.set(user);
+        if (mScheduled.compareAndSet(false, true)) {
+            executor().schedule(mSave, mDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isDirty() {
+        return mPending.get() != null;
+    }
+
+    /**
+     * Writes the user waiting to be written, if any, on the calling thread.
+     */
+    public void flush() {
+        // Taking the user under the lock keeps a late write from overwriting a newer one
+        synchronized (this) {
+            LQUser user = mPending.getAndSet(null);
+            if (user != null) {
+                user.save(mContext, mPath);
+            }
+        }
+    }
+
+    private synchronized ScheduledThreadPoolExecutor executor() {
+        if (mExecutor == null) {
+            mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "LQUserSaver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            mExecutor.setKeepAliveTime(IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS);
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mExecutor;
+    }
+}
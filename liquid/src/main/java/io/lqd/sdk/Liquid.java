@@ -22,10 +22,13 @@ import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.Application;
 import android.app.Application.ActivityLifecycleCallbacks;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.res.Configuration;
-import android.graphics.Color;
 import android.location.Location;
+import android.net.ConnectivityManager;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
@@ -38,13 +41,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import io.lqd.sdk.gcm.LQClientManager;
 import io.lqd.sdk.model.LQDataPoint;
 import io.lqd.sdk.model.LQDevice;
 import io.lqd.sdk.model.LQEvent;
+import io.lqd.sdk.model.LQEventTemplate;
 import io.lqd.sdk.model.LQInAppMessage;
 import io.lqd.sdk.model.LQLiquidPackage;
 import io.lqd.sdk.model.LQModel;
@@ -52,6 +54,7 @@ import io.lqd.sdk.model.LQNetworkRequest;
 import io.lqd.sdk.model.LQUser;
 import io.lqd.sdk.model.LQValue;
 import io.lqd.sdk.model.LQVariable;
+import io.lqd.sdk.model.LQVariableStore;
 import io.lqd.sdk.visual.InappMessage;
 import io.lqd.sdk.visual.Modal;
 import io.lqd.sdk.visual.SlideUp;
@@ -62,27 +65,37 @@ public class Liquid {
 
     public static final String LIQUID_VERSION = "2.1.1";
     private static final int LIQUID_DEFAULT_SESSION_TIMEOUT = 30;
+    private static final int LIQUID_NETWORK_THREADS = 2;
 
     private int mSessionTimeout;
     private String mApiToken;
-    private LQUser mCurrentUser;
+    private volatile LQUser mCurrentUser;
     private LQUser mPreviousUser;
-    private LQDevice mDevice;
-    protected ExecutorService mQueue;
+    private volatile LQDevice mDevice;
+    // User and device state, serial
+    protected LQLane mQueue;
+    // Liquid package files, serial
+    private LQLane mDiskQueue;
+    // Flushes, values and bundle variables requests
+    private LQLane mNetworkQueue;
+    private LQUserSaver mUserSaver;
     private boolean mAutoLoadValues;
     private Context mContext;
     private static Liquid mInstance;
-    private LQLiquidPackage mLoadedLiquidPackage;
-    private HashMap<String, LQValue> mAppliedValues = new HashMap<String, LQValue>();
+    private volatile LQLiquidPackage mLoadedLiquidPackage;
+    private volatile LQVariableStore mVariables = new LQVariableStore();
     private HashMap<String, Activity> mAttachedActivities = new HashMap<String, Activity>();
     private HashMap<String, LiquidOnEventListener> mListeners = new HashMap<String, LiquidOnEventListener>();
     private ArrayList<String> mBundleVariablesSended;
     private boolean mNeedCallbackCall = false;
-    private LQQueuer mHttpQueuer;
+    private volatile LQQueuer mHttpQueuer;
     private boolean isDevelopmentMode;
     private Activity mCurrentActivity;
     private LinkedList<InappMessage> mInAppMessagesQueue;
     private boolean isStarted;
+    private volatile boolean mReady;
+    private volatile int mPendingFlushInterval = LQQueuer.LIQUID_DEFAULT_FLUSH_INTERVAL;
+    private final ArrayList<LiquidOnReadyListener> mReadyListeners = new ArrayList<LiquidOnReadyListener>();
 
 
     /**
@@ -115,7 +128,7 @@ public class Liquid {
      */
     public static Liquid initialize(Context context, String apiToken) {
         if (!isInitialized()) {
-            mInstance = new Liquid(context, apiToken, false);
+            mInstance = new Liquid(context, apiToken, false, false);
         }
         mInstance.mContext = context;
         return mInstance;
@@ -136,17 +149,49 @@ public class Liquid {
      */
     public static Liquid initialize(Context context, String apiToken, boolean developmentMode) {
         if (!isInitialized()) {
-            mInstance = new Liquid(context, apiToken, developmentMode);
+            mInstance = new Liquid(context, apiToken, developmentMode, false);
         }
         mInstance.mContext = context;
         return mInstance;
     }
 
+    /**
+     * Call this method to initialize Liquid without blocking the calling thread.
+     *
+     * <p>
+     * The device, user, saved values and queued requests are loaded in background.
+     * Until then, events, user changes and settings are queued and applied in order
+     * once loading finishes, and variable getters return their fallback values.
+     * </p>
+     *
+     * @param context
+     *            The Android context of your application.
+     * @param apiToken
+     *            The Liquid ApiToken of your app.
+     * @param developmentMode
+     *            The flag to send to Liquid server the variables used in
+     *            methods with <b>fallbackVariable</b> param.
+     * @param listener
+     *            Notified on the main thread when loading finishes, can be null.
+     *
+     * @return The Liquid instance.
+     */
+    public static Liquid initializeAsync(Context context, String apiToken, boolean developmentMode, LiquidOnReadyListener listener) {
+        if (!isInitialized()) {
+            mInstance = new Liquid(context, apiToken, developmentMode, true);
+        }
+        mInstance.mContext = context;
+        if (listener != null) {
+            mInstance.addOnReadyListener(listener);
+        }
+        return mInstance;
+    }
+
     public static boolean isInitialized() {
         return mInstance != null;
     }
 
-    private Liquid(Context context, String apiToken, boolean developmentMode) {
+    private Liquid(Context context, String apiToken, boolean developmentMode, boolean async) {
         LiquidTools.checkForPermission(permission.INTERNET, context);
         if (apiToken == null || apiToken.length() == 0) {
             throw new IllegalArgumentException("Your API Token is invalid: \'" + apiToken + "\'.");
@@ -157,23 +202,104 @@ public class Liquid {
         }
         mSessionTimeout = LIQUID_DEFAULT_SESSION_TIMEOUT;
         mApiToken = apiToken;
-        mDevice = new LQDevice(context, LIQUID_VERSION);
-        mQueue = Executors.newSingleThreadExecutor();
-        loadLiquidPackage(true);
+        mQueue = new LQLane("state", 1);
+        mDiskQueue = new LQLane("disk", 1);
+        mNetworkQueue = new LQLane("network", LIQUID_NETWORK_THREADS);
+        mUserSaver = new LQUserSaver(mContext, mApiToken, LQUserSaver.DEFAULT_DELAY);
         mInAppMessagesQueue = new LinkedList<>();
-        mHttpQueuer = LQQueuer.load(mContext, mApiToken);
-        mHttpQueuer.setLiquidInstance(this);
-        mHttpQueuer.startFlushTimer();
         isDevelopmentMode = developmentMode;
         isStarted = false;
         if(isDevelopmentMode)
             mBundleVariablesSended = new ArrayList<String>();
 
+        if (async) {
+            // Anything deferred until ready is queued behind this load
+            mQueue.execute(new Runnable() {
+                @Override
+                public void run() {
+                    load();
+                }
+            });
+        } else {
+            load();
+        }
+    }
+
+    private void load() {
+        mDevice = new LQDevice(mContext, LIQUID_VERSION);
+        loadLiquidPackage(true);
+        mHttpQueuer = LQQueuer.load(mContext, mApiToken);
+        mHttpQueuer.setLiquidInstance(this);
+        mHttpQueuer.setConnectivity(mDevice.getInternetConnectivity());
+        mHttpQueuer.startFlushTimer();
+        registerConnectivityReceiver();
+
         // Get last user and init session
         mPreviousUser = LQUser.load(mContext, mApiToken + ".user");
-        identifyUser(mPreviousUser.getIdentifier(), mPreviousUser.getAttributes(), mPreviousUser.isIdentified(), false);
+        identifyUserNow(mPreviousUser.getIdentifier(), mPreviousUser.getAttributes(), mPreviousUser.isIdentified(), false);
+
+        mReady = true;
+        notifyReadyListeners();
+        LQLog.info("Initialized Liquid with API Token " + mApiToken);
+    }
+
+    /**
+     * Returns whether Liquid finished loading its saved state.
+     * Always true when initialized with {@link #initialize(Context, String)}.
+     *
+     * @return true if Liquid is ready, otherwise false.
+     */
+    public boolean isReady() {
+        return mReady;
+    }
+
+    /**
+     * Notifies <b>listener</b> on the main thread once Liquid is ready,
+     * right away if it already is.
+     *
+     * @param listener Listener to be notified.
+     */
+    public void addOnReadyListener(LiquidOnReadyListener listener) {
+        synchronized (mReadyListeners) {
+            if (!mReady) {
+                mReadyListeners.add(listener);
+                return;
+            }
+        }
+        postReady(listener);
+    }
+
+    private void notifyReadyListeners() {
+        ArrayList<LiquidOnReadyListener> listeners;
+        synchronized (mReadyListeners) {
+            listeners = new ArrayList<LiquidOnReadyListener>(mReadyListeners);
+            mReadyListeners.clear();
+        }
+        for (LiquidOnReadyListener listener : listeners) {
+            postReady(listener);
+        }
+    }
 
-        LQLog.info("Initialized Liquid with API Token " + apiToken);
+    private void postReady(final LiquidOnReadyListener listener) {
+        new Handler(mContext.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onLiquidReady(Liquid.this);
+            }
+        });
+    }
+
+    /**
+     * Queues <b>runnable</b> behind the initial load if it didn't finish yet.
+     *
+     * @return true if the call was deferred, false if Liquid is ready
+     */
+    private boolean deferUntilReady(Runnable runnable) {
+        if (mReady) {
+            return false;
+        }
+        mQueue.execute(runnable);
+        return true;
     }
 
     /*
@@ -271,7 +397,18 @@ public class Liquid {
      * @param flushInterval
      *            value in seconds.
      */
-    public void setFlushInterval(int flushInterval) {
+    public void setFlushInterval(final int flushInterval) {
+        if (!mReady) {
+            mPendingFlushInterval = flushInterval;
+        }
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                setFlushInterval(flushInterval);
+            }
+        })) {
+            return;
+        }
         mHttpQueuer.setFlushTimer(flushInterval);
     }
 
@@ -281,9 +418,161 @@ public class Liquid {
      * @return value in seconds of the flush interval.
      */
     public int getFlushInterval() {
+        if (!mReady) {
+            return mPendingFlushInterval;
+        }
         return mHttpQueuer.getFlushTimer();
     }
 
+    /**
+     * Set how long changes to the user are coalesced before they are
+     * saved. The user is also saved when the app goes to background.
+     *
+     * @param delay
+     *            value in milliseconds, defaults to one second.
+     */
+    public void setUserSaveDelay(int delay) {
+        mUserSaver.setDelay(delay);
+    }
+
+    /**
+     * Upload queued data points in batches instead of one request per event.
+     *
+     * <p>
+     * Up to <b>maxDataPoints</b> data points (and at most <b>maxBytes</b> of
+     * payload) are sent together on each upload. Batching is disabled by
+     * default, which is the same as setting <b>maxDataPoints</b> to 1.
+     * </p>
+     *
+     * @param maxDataPoints
+     *            maximum number of data points per upload.
+     * @param maxBytes
+     *            maximum payload size in bytes per upload.
+     */
+    public void setFlushBatchSize(final int maxDataPoints, final int maxBytes) {
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                setFlushBatchSize(maxDataPoints, maxBytes);
+            }
+        })) {
+            return;
+        }
+        mHttpQueuer.setBatchSize(maxDataPoints, maxBytes);
+    }
+
+    /**
+     * Number of uploads that can be in flight at the same time when the
+     * queue is flushed. Defaults to 1, which sends one upload at a time.
+     * Events only reach Liquid in the order they were tracked when this is 1;
+     * higher values may deliver them out of order.
+     *
+     * @param maxInFlight
+     *            maximum number of concurrent uploads.
+     */
+    public void setFlushConcurrency(final int maxInFlight) {
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                setFlushConcurrency(maxInFlight);
+            }
+        })) {
+            return;
+        }
+        mHttpQueuer.setMaxInFlight(maxInFlight);
+    }
+
+    /**
+     * Replace the policy that decides when failed requests are retried.
+     * Defaults to {@link LQBackoffRetryPolicy}.
+     *
+     * @param policy
+     *            the retry policy.
+     */
+    public void setRetryPolicy(final LQRetryPolicy policy) {
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                setRetryPolicy(policy);
+            }
+        })) {
+            return;
+        }
+        mHttpQueuer.setRetryPolicy(policy);
+    }
+
+    /**
+     * Compress the body of the requests sent to Liquid with gzip.
+     *
+     * <p>
+     * Only bodies with at least <b>minLength</b> characters are compressed,
+     * smaller ones are sent as they are. Compression is disabled by default.
+     * </p>
+     *
+     * @param minLength
+     *            minimum body length to compress.
+     */
+    public void enableRequestCompression(int minLength) {
+        LQNetworkRequest.enableCompression(minLength);
+    }
+
+    /**
+     * Stop compressing the body of the requests sent to Liquid.
+     */
+    public void disableRequestCompression() {
+        LQNetworkRequest.disableCompression();
+    }
+
+    /**
+     * Get how long the work of Liquid waits before running, for each of
+     * its lanes: user and device state, disk and network.
+     *
+     * @return the queue wait statistics of each lane.
+     */
+    public ArrayList<LQLane.Stats> getLaneStats() {
+        ArrayList<LQLane.Stats> stats = new ArrayList<LQLane.Stats>(3);
+        stats.add(mQueue.getStats());
+        stats.add(mDiskQueue.getStats());
+        stats.add(mNetworkQueue.getStats());
+        return stats;
+    }
+
+    /**
+     * Start or stop recording metrics about the work of Liquid: queue depth,
+     * enqueue and flush times, bytes sent, HTTP status codes, retries and
+     * dropped events. Metrics are disabled by default.
+     *
+     * @param enabled
+     *            true to record metrics.
+     * @see LQMetrics
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        LQMetrics.setEnabled(enabled);
+    }
+
+    /**
+     * Get the metrics recorded since they were enabled.
+     *
+     * @return a snapshot of the metrics.
+     */
+    public LQMetrics.Snapshot getMetrics() {
+        return LQMetrics.snapshot();
+    }
+
+    /**
+     * Receive the metrics after each flush of the queue.
+     *
+     * @param listener
+     *            called on the thread that flushed the queue.
+     */
+    public void addMetricsListener(LQMetrics.Listener listener) {
+        LQMetrics.addListener(listener);
+    }
+
+    public void removeMetricsListener(LQMetrics.Listener listener) {
+        LQMetrics.removeListener(listener);
+    }
+
     /*
      * *******************
      * User Interaction
@@ -309,13 +598,21 @@ public class Liquid {
     }
 
     public void alias() {
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                alias();
+            }
+        })) {
+            return;
+        }
         final String oldID = mPreviousUser.getIdentifier();
         final String newID = mCurrentUser.getIdentifier();
         if (mPreviousUser.isIdentified()) {
             LQLog.warning("Can't alias (" + oldID + "): Isn't an anonymous user.");
             return;
         }
-        LQLog.infoVerbose("Making alias between (" + oldID + ") and (" + newID + ").");
+        LQLog.infoVerbose("Making alias between (%s) and (%s).", oldID, newID);
         mQueue.execute(new Runnable() {
             @Override
             public void run() {
@@ -328,11 +625,19 @@ public class Liquid {
      * Create a new User with a new UUID if the user isn't an identified one
      */
     public void resetUser() {
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                resetUser();
+            }
+        })) {
+            return;
+        }
         if(mCurrentUser.isIdentified()) {
             identifyUser(LQModel.newIdentifier(), null, false, false);
         } else {
             mCurrentUser.clearCustomAttributes();
-            mCurrentUser.save(mContext, mApiToken);
+            saveCurrentUser();
         }
     }
 
@@ -386,8 +691,20 @@ public class Liquid {
     }
 
 
-    private void identifyUser(final String identifier, Map<String, Object> attributes, boolean identified, boolean alias) {
-        final HashMap<String, Object> finalAttributes = LQModel.sanitizeAttributes(attributes, isDevelopmentMode);
+    private void identifyUser(final String identifier, final Map<String, Object> attributes, final boolean identified, final boolean alias) {
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                identifyUserNow(identifier, attributes, identified, alias);
+            }
+        })) {
+            return;
+        }
+        identifyUserNow(identifier, attributes, identified, alias);
+    }
+
+    private void identifyUserNow(final String identifier, Map<String, Object> attributes, boolean identified, boolean alias) {
+        final HashMap<String, Object> finalAttributes = sanitizeAppAttributes(attributes);
 
         // invalid identifier, keeps the current user
         if (identifier == null || identifier.isEmpty()) {
@@ -397,15 +714,15 @@ public class Liquid {
         // same id -> just update attributes
         if (mCurrentUser != null && mCurrentUser.getIdentifier().equals(identifier)) {
             mCurrentUser.setAttributes(finalAttributes);
-            mCurrentUser.save(mContext, mApiToken);
-            LQLog.infoVerbose("Already identified with user " + identifier + ". Not identifying again.");
+            saveCurrentUser();
+            LQLog.infoVerbose("Already identified with user %s. Not identifying again.", identifier);
             return;
         }
 
         mPreviousUser = mCurrentUser;
         mCurrentUser = new LQUser(identifier, finalAttributes, identified);
         requestValues();
-        mCurrentUser.save(mContext, mApiToken);
+        saveCurrentUser();
 
         if (alias) {
             alias();
@@ -414,13 +731,17 @@ public class Liquid {
         LQLog.info("From now on we're identifying the User by the identifier '" + identifier + "'");
     }
 
+    private void saveCurrentUser() {
+        mUserSaver.saveLater(mCurrentUser.snapshot());
+    }
+
     /**
      * Get the user UUID
      *
      * @return the user UUID, null if the user isn't identified.
      */
     public String getUserIdentifier() {
-        if (mCurrentUser == null) {
+        if (!mReady || mCurrentUser == null) {
             return null;
         }
         return mCurrentUser.getIdentifier();
@@ -451,7 +772,7 @@ public class Liquid {
                 @Override
                 public void run() {
                     mCurrentUser.setAttribute(finalKey, finalAttribute);
-                    mCurrentUser.save(mContext, mApiToken);
+                    saveCurrentUser();
                 }
             });
         }
@@ -466,7 +787,7 @@ public class Liquid {
                         mCurrentUser.setAttribute(key, attributes.get(key));
                     }
                 }
-                mCurrentUser.save(mContext, mApiToken);
+                saveCurrentUser();
             }
         });
     }
@@ -548,7 +869,9 @@ public class Liquid {
      */
     public void track(String eventName, Map<String, Object> attributes) {
         if (LQEvent.hasValidName(eventName, isDevelopmentMode)) {
-            track(eventName, attributes, UniqueTime.newDate());
+            long start = LQMetrics.start();
+            Date date = UniqueTime.newDate();
+            track(new LQEvent(eventName, sanitizeAppAttributes(attributes), date), date, start);
         }
     }
 
@@ -565,7 +888,7 @@ public class Liquid {
                mHttpQueuer.addToHttpQueue(LQRequestFactory.inappMessagesReportRequest(mCurrentUser.getIdentifier(), inAppMessage.getFormulaId()));
             }
         });
-        track(inAppMessage.getDismissEventName(), inAppMessage.getDismissAttributes(), UniqueTime.newDate());
+        track(inAppMessage.getDismissEventName(), LQModel.sanitizeAttributes(inAppMessage.getDismissAttributes(), isDevelopmentMode), UniqueTime.newDate());
     }
 
     /**
@@ -588,23 +911,89 @@ public class Liquid {
                 }
             }
         });
-        track(inAppMessageCta.getCtasEventName(), inAppMessageCta.getCtasAttributes(), UniqueTime.newDate());
+        track(inAppMessageCta.getCtasEventName(), LQModel.sanitizeAttributes(inAppMessageCta.getCtasAttributes(), isDevelopmentMode), UniqueTime.newDate());
     }
 
-    private void track(String eventName, Map<String, Object> attributes, Date date) {
-        LQEvent event = new LQEvent(eventName, LQModel.sanitizeAttributes(attributes, isDevelopmentMode), date);
+    /**
+     * Create a template for an event tracked many times with the same
+     * attribute keys. The name and the keys are validated once, here.
+     *
+     * @param eventName
+     *            Name of the event.
+     * @param attributeKeys
+     *            Keys of the attributes, in the order of the values given to
+     *            {@link #track(LQEventTemplate, Object...)}.
+     * @return the template.
+     */
+    public LQEventTemplate createEventTemplate(String eventName, String... attributeKeys) {
+        return new LQEventTemplate(eventName, attributeKeys, isDevelopmentMode);
+    }
 
-        LQLog.infoVerbose("Tracking: " + event.getName());
+    /**
+     * Track an event of a template.
+     *
+     * @param template
+     *            Template created by {@link #createEventTemplate(String, String...)}.
+     * @param values
+     *            Values of the attributes, in the order of the template keys.
+     *            Null values are left out.
+     */
+    public void track(LQEventTemplate template, Object... values) {
+        if (!template.isValid()) {
+            LQLog.warning("Event can't begin with \' _ \' character ");
+            return;
+        }
+        long start = LQMetrics.start();
+        Object[] checked = template.checkValues(values, isDevelopmentMode);
+        if (checked != null) {
+            Date date = UniqueTime.newDate();
+            track(new LQEvent(template, checked, date), date, start);
+        }
+    }
+
+    private void track(String eventName, HashMap<String, Object> sanitizedAttributes, final Date date) {
+        long start = LQMetrics.start();
+        track(new LQEvent(eventName, sanitizedAttributes, date), date, start);
+    }
+
+    /**
+     * Sanitizes the attributes given by the app. The app keeps its map, so it is
+     * copied even when all the attributes are valid: changing it later must not
+     * change an event or a user captured before.
+     */
+    private HashMap<String, Object> sanitizeAppAttributes(Map<String, Object> attributes) {
+        HashMap<String, Object> sanitized = LQModel.sanitizeAttributes(attributes, isDevelopmentMode);
+        if (sanitized != null && sanitized == attributes) {
+            return new HashMap<String, Object>(sanitized);
+        }
+        return sanitized;
+    }
+
+    private void track(final LQEvent event, final Date date, long start) {
+        LQLog.infoVerbose("Tracking: %s", event.getName());
 
-        final String datapoint = new LQDataPoint(mCurrentUser, mDevice, event, mLoadedLiquidPackage.getValues(), date).toJSON().toString();
-        LQLog.data(datapoint);
+        // Capture the state at call time, the JSON is built on the queue.
+        // Before the initial load finishes, the queue order gives the same state.
+        final boolean ready = mReady;
+        final LQUser user = ready ? mCurrentUser.snapshot() : null;
+        final LQDevice device = ready ? mDevice.snapshot() : null;
+        final ArrayList<LQValue> values = ready ? mLoadedLiquidPackage.getValues() : null;
 
         mQueue.execute(new Runnable() {
             @Override
             public void run() {
+                LQDataPoint dataPoint;
+                if (ready) {
+                    dataPoint = new LQDataPoint(user, device, event, values, date);
+                } else {
+                    dataPoint = new LQDataPoint(mCurrentUser.snapshot(), mDevice.snapshot(), event, mLoadedLiquidPackage.getValues(), date);
+                }
+                String datapoint = dataPoint.toJSONString();
+                LQLog.data(datapoint);
                 mHttpQueuer.addToHttpQueue(LQRequestFactory.createDataPointRequest(datapoint));
             }
         });
+        LQMetrics.recordSince(LQMetrics.TRACK_TIME, start);
     }
 
     /*
@@ -710,6 +1099,7 @@ public class Liquid {
 
         if (isApplicationInBackground(activity)) {
             track("app background", null, UniqueTime.newDate());
+            mUserSaver.flush();
             flush();
             requestValues();
             isStarted = false;
@@ -740,16 +1130,34 @@ public class Liquid {
             showInAppMessages();
         }
 
-        mHttpQueuer.startFlushTimer();
+        if (!deferUntilReady(mStartFlushTimer)) {
+            mStartFlushTimer.run();
+        }
     }
 
     private void activityPausedCallback(Activity activity) {
         mCurrentActivity = activity;
 
         mInstance.detachActivity(activity);
-        mHttpQueuer.stopFlushTimer();
+        if (!deferUntilReady(mStopFlushTimer)) {
+            mStopFlushTimer.run();
+        }
     }
 
+    private final Runnable mStartFlushTimer = new Runnable() {
+        @Override
+        public void run() {
+            mHttpQueuer.startFlushTimer();
+        }
+    };
+
+    private final Runnable mStopFlushTimer = new Runnable() {
+        @Override
+        public void run() {
+            mHttpQueuer.stopFlushTimer();
+        }
+    };
+
 
 
     @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
@@ -793,29 +1201,47 @@ public class Liquid {
         });
     }
 
+    private void registerConnectivityReceiver() {
+        IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+        mContext.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                mQueue.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mDevice.refreshInternetConnectivity();
+                        mHttpQueuer.setConnectivity(mDevice.getInternetConnectivity());
+                    }
+                });
+            }
+        }, filter);
+    }
+
     /**
      * Request values from the server.
      */
     public void requestValues() {
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                requestValues();
+            }
+        })) {
+            return;
+        }
         if ((mCurrentUser != null) && (mDevice != null)) {
-            mQueue.execute(new Runnable() {
+            final LQNetworkRequest req = LQRequestFactory.requestLiquidPackageRequest(mCurrentUser.getIdentifier(), mDevice.getUID());
+            mNetworkQueue.execute(new Runnable() {
                 @Override
                 public void run() {
-                    LQNetworkRequest req = LQRequestFactory.requestLiquidPackageRequest(mCurrentUser.getIdentifier(), mDevice.getUID());
-                    String dataFromServer = req.sendRequest(mApiToken).getRequestResponse();
+                    final String dataFromServer = req.sendRequest(mApiToken).getRequestResponse();
                     if (dataFromServer != null) {
-                        try {
-                            JSONObject jsonObject = new JSONObject(dataFromServer);
-                            LQLiquidPackage liquidPackage = new LQLiquidPackage(jsonObject);
-                            LQLog.http(jsonObject.toString());
-                            liquidPackage.saveToDisk(mContext);
-                        } catch (JSONException e) {
-                            LQLog.error("Could not parse JSON (Liquid Variables):" + dataFromServer);
-                        }
-                        notifyListeners(true);
-                        if (mAutoLoadValues) {
-                            loadLiquidPackage(false);
-                        }
+                        mDiskQueue.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                saveValues(dataFromServer);
+                            }
+                        });
                     }
                 }
 
@@ -823,6 +1249,21 @@ public class Liquid {
         }
     }
 
+    private void saveValues(String dataFromServer) {
+        try {
+            JSONObject jsonObject = new JSONObject(dataFromServer);
+            LQLiquidPackage liquidPackage = new LQLiquidPackage(jsonObject);
+            LQLog.http("%s", jsonObject);
+            liquidPackage.saveToDisk(mContext);
+        } catch (JSONException e) {
+            LQLog.error("Could not parse JSON (Liquid Variables):" + dataFromServer);
+        }
+        notifyListeners(true);
+        if (mAutoLoadValues) {
+            loadLiquidPackage(true);
+        }
+    }
+
     public void addInapp(LQInAppMessage inapp) {
         if(mCurrentActivity == null)
             return;
@@ -883,14 +1324,14 @@ public class Liquid {
             @Override
             public void run() {
                 mLoadedLiquidPackage = LQLiquidPackage.loadFromDisk(mContext);
-                mAppliedValues = LQValue.convertToHashMap(mLoadedLiquidPackage.getValues());
+                mVariables = new LQVariableStore(mLoadedLiquidPackage.getValues());
                 notifyListeners(false);
             }
         };
         if (runInCurrentThread) {
             runnable.run();
         } else {
-            mQueue.execute(runnable);
+            mDiskQueue.execute(runnable);
         }
     }
 
@@ -915,16 +1356,15 @@ public class Liquid {
         if (isDevelopmentMode) {
             sendBundleVariable(LQVariable.buildJsonObject(variableKey, fallbackValue, LQVariable.DATE_TYPE));
         }
-        if (!mAppliedValues.containsKey(variableKey)) {
+        LQVariableStore.Entry entry = mVariables.get(variableKey);
+        if (entry == null) {
             return fallbackValue;
         }
-        if (mAppliedValues.get(variableKey).getDataType().equals(LQVariable.DATE_TYPE)) {
-            try {
-                Object value = mAppliedValues.get(variableKey).getValue();
-                return value == null ? null : LiquidTools.stringToDate((String) value);
-            } catch (IllegalArgumentException e) {
-                LQLog.error("Error parsing Date with key: \"" + variableKey + "\"");
-            }
+        if (entry.is(LQVariableStore.DATE)) {
+            return new Date(entry.getDate());
+        }
+        if (entry.getType() == LQVariableStore.DATE) {
+            LQLog.error("Error parsing Date with key: \"" + variableKey + "\"");
         }
         invalidateVariables(variableKey);
         return fallbackValue;
@@ -945,16 +1385,15 @@ public class Liquid {
         if (isDevelopmentMode) {
             sendBundleVariable(LQVariable.buildJsonObject(variableKey, LiquidTools.colorToHex(fallbackValue), LQVariable.COLOR_TYPE));
         }
-        if (!mAppliedValues.containsKey(variableKey)) {
+        LQVariableStore.Entry entry = mVariables.get(variableKey);
+        if (entry == null) {
             return fallbackValue;
         }
-        if (mAppliedValues.get(variableKey).getDataType()
-                .equals(LQVariable.COLOR_TYPE)) {
-            try {
-                return Color.parseColor(mAppliedValues.get(variableKey).getValue().toString());
-            } catch (IllegalArgumentException e) {
-                LQLog.error("Error parsing Color with key: \"" + variableKey + "\"");
-            }
+        if (entry.is(LQVariableStore.COLOR)) {
+            return entry.getColor();
+        }
+        if (entry.getType() == LQVariableStore.COLOR) {
+            LQLog.error("Error parsing Color with key: \"" + variableKey + "\"");
         }
         invalidateVariables(variableKey);
         return fallbackValue;
@@ -975,12 +1414,12 @@ public class Liquid {
         if (isDevelopmentMode) {
             sendBundleVariable(LQVariable.buildJsonObject(variableKey, fallbackValue, LQVariable.STRING_TYPE));
         }
-        if (!mAppliedValues.containsKey(variableKey)) {
+        LQVariableStore.Entry entry = mVariables.get(variableKey);
+        if (entry == null) {
             return fallbackValue;
         }
-        if (mAppliedValues.get(variableKey).getDataType().equals(LQVariable.STRING_TYPE)) {
-            Object value = mAppliedValues.get(variableKey).getValue();
-            return value == null ? null : value.toString();
+        if (entry.is(LQVariableStore.STRING)) {
+            return entry.getString();
         }
         invalidateVariables(variableKey);
         return fallbackValue;
@@ -1001,15 +1440,15 @@ public class Liquid {
         if (isDevelopmentMode) {
             sendBundleVariable(LQVariable.buildJsonObject(variableKey,fallbackValue, LQVariable.INT_TYPE));
         }
-        if (!mAppliedValues.containsKey(variableKey)) {
+        LQVariableStore.Entry entry = mVariables.get(variableKey);
+        if (entry == null) {
             return fallbackValue;
         }
-        if (mAppliedValues.get(variableKey).getDataType().equals(LQVariable.INT_TYPE)) {
-            try {
-                return Integer.parseInt(mAppliedValues.get(variableKey).getValue().toString());
-            } catch (NumberFormatException e) {
-                LQLog.error("Error parsing Integer with key: \"" + variableKey + "\"");
-            }
+        if (entry.is(LQVariableStore.INT)) {
+            return entry.getInt();
+        }
+        if (entry.getType() == LQVariableStore.INT) {
+            LQLog.error("Error parsing Integer with key: \"" + variableKey + "\"");
         }
         invalidateVariables(variableKey);
         return fallbackValue;
@@ -1030,15 +1469,15 @@ public class Liquid {
         if (isDevelopmentMode) {
             sendBundleVariable(LQVariable.buildJsonObject(variableKey, fallbackValue, LQVariable.FLOAT_TYPE));
         }
-        if (!mAppliedValues.containsKey(variableKey)) {
+        LQVariableStore.Entry entry = mVariables.get(variableKey);
+        if (entry == null) {
             return fallbackValue;
         }
-        if (mAppliedValues.get(variableKey).getDataType().equals(LQVariable.FLOAT_TYPE)) {
-            try {
-                return Float.parseFloat(mAppliedValues.get(variableKey).getValue().toString());
-            } catch (NumberFormatException e) {
-                LQLog.error("Error parsing Float with key: \"" + variableKey + "\"");
-            }
+        if (entry.is(LQVariableStore.FLOAT)) {
+            return entry.getFloat();
+        }
+        if (entry.getType() == LQVariableStore.FLOAT) {
+            LQLog.error("Error parsing Float with key: \"" + variableKey + "\"");
         }
         invalidateVariables(variableKey);
         return fallbackValue;
@@ -1048,11 +1487,12 @@ public class Liquid {
         if (isDevelopmentMode) {
             sendBundleVariable(LQVariable.buildJsonObject(variableKey, fallbackValue, LQVariable.BOOLEAN_TYPE));
         }
-        if (!mAppliedValues.containsKey(variableKey)) {
+        LQVariableStore.Entry entry = mVariables.get(variableKey);
+        if (entry == null) {
             return fallbackValue;
         }
-        if (mAppliedValues.get(variableKey).getDataType().equals(LQVariable.BOOLEAN_TYPE)) {
-            return Boolean.parseBoolean(mAppliedValues.get(variableKey).getValue().toString());
+        if (entry.is(LQVariableStore.BOOLEAN)) {
+            return entry.getBoolean();
         }
         invalidateVariables(variableKey);
         return fallbackValue;
@@ -1063,22 +1503,35 @@ public class Liquid {
      * Force Liquid to send locally saved data.
      */
     public void flush() {
+        if (deferUntilReady(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        })) {
+            return;
+        }
+        if (!mHttpQueuer.requestFlush()) {
+            LQLog.infoVerbose("Flush already pending");
+            return;
+        }
         LQLog.infoVerbose("Flushing");
-        mQueue.execute(new Runnable() {
+        final LQQueuer queuer = mHttpQueuer;
+        mNetworkQueue.execute(new Runnable() {
             @Override
             public void run() {
-                mHttpQueuer.flush();
+                queuer.flush();
             }
         });
     }
 
     private void sendBundleVariable(final JSONObject variable) {
         if(!mBundleVariablesSended.contains(variable.optString("name"))) {
-            mQueue.execute(new Runnable() {
+            mNetworkQueue.execute(new Runnable() {
 
                 @Override
                 public void run() {
-                    LQLog.infoVerbose("Sending bundle variable " + variable);
+                    LQLog.infoVerbose("Sending bundle variable %s", variable);
                     LQRequestFactory.createVariableRequest(variable).sendRequest(mApiToken);
                 }
             });
@@ -1111,9 +1564,9 @@ public class Liquid {
             public void run() {
                 mDevice = new LQDevice(mContext, LIQUID_VERSION);
                 mLoadedLiquidPackage = new LQLiquidPackage();
-                mAppliedValues = new HashMap<String, LQValue>();
+                mVariables = new LQVariableStore();
                 if(!soft) {
-                    mHttpQueuer = new LQQueuer(mContext, mApiToken);
+                    mHttpQueuer.clear();
                 }
                 resetUser();
             }
@@ -1121,15 +1574,15 @@ public class Liquid {
     }
 
     private void invalidateVariables(final String variableKey) {
-        mQueue.execute(new Runnable() {
+        mDiskQueue.execute(new Runnable() {
 
             @Override
             public void run() {
-                LQLog.infoVerbose("invalidating: " + variableKey);
+                LQLog.infoVerbose("invalidating: %s", variableKey);
                 boolean removed = mLoadedLiquidPackage.invalidateTargetFromVariableKey(variableKey);
                 if (removed) {
-                    LQLog.infoVerbose("invalidated: " + variableKey);
-                    mAppliedValues = LQValue.convertToHashMap(mLoadedLiquidPackage.getValues());
+                    LQLog.infoVerbose("invalidated: %s", variableKey);
+                    mVariables = new LQVariableStore(mLoadedLiquidPackage.getValues());
                     mLoadedLiquidPackage.saveToDisk(mContext);
                     notifyListeners(false);
                 }
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk;
+
+/**
+ * Provides a notification when Liquid finished loading its saved state.
+ *
+ * @see Liquid#initializeAsync(android.content.Context, String, boolean, LiquidOnReadyListener)
+ */
+public interface LiquidOnReadyListener {
+
+    /**
+     * Callback method to be invoked on the main thread once the device, user,
+     * saved values and queued requests have been loaded.
+     */
+    public void onLiquidReady(Liquid liquid);
+}
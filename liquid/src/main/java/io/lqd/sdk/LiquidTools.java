@@ -59,7 +59,7 @@ public class LiquidTools {
     }
 
     public static String dateToString(Date date) {
-        return ISO8601Utils.format(date, true, timezone);
+        return LQTimestampFormatter.format(date, timezone);
     }
 
     public static Date stringToDate(String date) throws IllegalArgumentException {
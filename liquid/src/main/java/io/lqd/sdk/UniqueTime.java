@@ -16,18 +16,69 @@
 
 package io.lqd.sdk;
 
-import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Source of unique event timestamps.
+ *
+ * <p>
+ * Time is read from a monotonic clock anchored to the wall clock, so it never goes back
+ * when the device time is changed. The anchor moves forward when the wall clock gets
+ * ahead, after the device slept or the time was set forward.
+ * </p>
+ *
+ * <p>
+ * Each timestamp is at least one millisecond after the previous one in the process,
+ * without locking. Timestamps only run ahead of the clock while more than one event per
+ * millisecond is tracked, and catch up as soon as the burst is over.
+ * </p>
+ */
 public class UniqueTime {
 
-    private static int mIncrement = 1;
+    private static final long RESYNC_THRESHOLD = 1000; // milliseconds
+
+    private static final AtomicLong mLastTime = new AtomicLong(Long.MIN_VALUE);
+    private static volatile Anchor mAnchor = new Anchor(System.currentTimeMillis(), System.nanoTime());
+
+    public static Date newDate() {
+        return new Date(newTime());
+    }
+
+    public static long newTime() {
+        long now = currentTime();
+        while (true) {
+            long last = mLastTime.get();
+            long next = now > last ? now : last + 1;
+            if (mLastTime.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
 
-    public static synchronized Date newDate() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.MILLISECOND, mIncrement);
-        mIncrement = (mIncrement + 1) % 200;
-        return cal.getTime();
+    /**
+     * @return the monotonic clock, in milliseconds since the epoch
+     */
+    static long currentTime() {
+        Anchor anchor = mAnchor;
+        long nanos = System.nanoTime();
+        long now = anchor.mWallTime + (nanos - anchor.mNanoTime) / 1000000;
+        long wallTime = System.currentTimeMillis();
+        if (wallTime - now > RESYNC_THRESHOLD) {
+            mAnchor = new Anchor(wallTime, nanos);
+            return wallTime;
+        }
+        return now;
     }
 
+    private static class Anchor {
+
+        final long mWallTime;
+        final long mNanoTime;
+
+        Anchor(long wallTime, long nanoTime) {
+            mWallTime = wallTime;
+            mNanoTime = nanoTime;
+        }
+    }
 }
@@ -23,6 +23,7 @@ import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.Date;
 
+import io.lqd.sdk.LQLog;
 import io.lqd.sdk.LiquidTools;
 
 public class LQDataPoint {
@@ -85,4 +86,51 @@ public class LQDataPoint {
         return new JSONObject();
     }
 
+    /**
+     * Encodes the same JSON as {@link #toJSON()}, without building the
+     * intermediate objects. The device is encoded once and reused.
+     */
+    public String toJSONString() {
+        LQJsonWriter writer = LQJsonWriter.obtain();
+        writer.beginObject();
+
+        long mark = writer.mark();
+        try {
+            writer.name("user");
+            mUser.writeJSON(writer);
+        } catch (JSONException e) {
+            LQLog.error("LQUser toJSON: " + e.getMessage());
+            writer.rollback(mark);
+        }
+
+        String deviceJSON = mDevice.toJSONString();
+        if (deviceJSON != null) {
+            writer.name("device").rawValue(deviceJSON);
+        }
+
+        mark = writer.mark();
+        try {
+            writer.name("event");
+            mEvent.writeJSON(writer);
+        } catch (JSONException e) {
+            LQLog.error("LQEvent toJSON: " + e.getMessage());
+            writer.rollback(mark);
+        }
+
+        try {
+            if (!mValues.isEmpty()) {
+                writer.name("values").beginArray();
+                for (LQValue value : mValues) {
+                    value.writeJSON(writer);
+                }
+                writer.endArray();
+            }
+            writer.field("timestamp", LiquidTools.dateToString(mTimestamp));
+        } catch (JSONException e) {
+            LQLog.error("LQDataPoint toJSON: " + e.getMessage());
+        }
+        writer.endObject();
+        return writer.toString();
+    }
+
 }
@@ -45,14 +45,17 @@ public class LQDevice {
     private int mSystemVersion;
     private String mScreenSize;
     private String mCarrier;
-    private String mInternetConnectivity;
+    private volatile String mInternetConnectivity;
     private String mUid;
     private String mAppBundle;
     private String mAppVersion;
     private String mAppName;
     private int mReleaseVersion;
     private String mLiquidVersion;
-    private HashMap<String, Object> mAttributes;
+    // Never mutated in place, so snapshots can share it
+    private volatile HashMap<String, Object> mAttributes;
+    private volatile JSONObject mJSON;
+    private volatile String mJSONString;
 
     private Context mContext;
     private String mLocale;
@@ -83,37 +86,128 @@ public class LQDevice {
         setLocation(location);
     }
 
+    private LQDevice(LQDevice device) {
+        mAttributes = device.mAttributes;
+        mVendor = device.mVendor;
+        mDeviceModel = device.mDeviceModel;
+        mSystemVersion = device.mSystemVersion;
+        mScreenSize = device.mScreenSize;
+        mCarrier = device.mCarrier;
+        mInternetConnectivity = device.mInternetConnectivity;
+        mUid = device.mUid;
+        mAppBundle = device.mAppBundle;
+        mAppName = device.mAppName;
+        mAppVersion = device.mAppVersion;
+        mReleaseVersion = device.mReleaseVersion;
+        mLiquidVersion = device.mLiquidVersion;
+        mLocale = device.mLocale;
+        mSystemLanguage = device.mSystemLanguage;
+        mJSON = device.mJSON;
+        mJSONString = device.mJSONString;
+    }
+
+    /**
+     * Returns a copy of this device that is not affected by later changes.
+     * Synchronized with the setters, so the attributes and the cached JSON match.
+     */
+    public synchronized LQDevice snapshot() {
+        return new LQDevice(this);
+    }
+
     // Attributes
     public String getUID() {
         return mUid;
     }
 
-    public void setLocation(Location location) {
+    public synchronized void setLocation(Location location) {
+        HashMap<String, Object> attributes = new HashMap<String, Object>(mAttributes);
         if (location == null) {
-            mAttributes.remove("latitude");
-            mAttributes.remove("longitude");
+            attributes.remove("latitude");
+            attributes.remove("longitude");
         } else {
-            mAttributes.put("latitude", Double.valueOf(location.getLatitude()));
-            mAttributes.put("longitude",Double.valueOf(location.getLongitude()));
+            attributes.put("latitude", Double.valueOf(location.getLatitude()));
+            attributes.put("longitude",Double.valueOf(location.getLongitude()));
         }
+        updateAttributes(attributes);
     }
 
-    public void setPushId(String id) {
+    public synchronized void setPushId(String id) {
+        HashMap<String, Object> attributes = new HashMap<String, Object>(mAttributes);
         if(id == null || id.equals("")) {
-            mAttributes.remove("push_token");
+            attributes.remove("push_token");
         } else {
-            mAttributes.put("push_token", id);
+            attributes.put("push_token", id);
+        }
+        updateAttributes(attributes);
+    }
+
+    /**
+     * Queries the current connectivity, called when the system reports a change.
+     */
+    public synchronized void refreshInternetConnectivity() {
+        String connectivity = LQDevice.getInternetConnectivity(mContext);
+        if (!connectivity.equals(mInternetConnectivity)) {
+            mInternetConnectivity = connectivity;
+            mJSON = null;
+            mJSONString = null;
+        }
+    }
+
+    public String getInternetConnectivity() {
+        return mInternetConnectivity;
+    }
+
+    private void updateAttributes(HashMap<String, Object> attributes) {
+        if (!attributes.equals(mAttributes)) {
+            mAttributes = attributes;
+            mJSON = null;
+            mJSONString = null;
         }
     }
 
     // JSON
+
+    /**
+     * The returned object is cached until location, push token or
+     * connectivity change, and must not be modified.
+     */
     public JSONObject toJSON() {
-        // Updating to avoid callbacks
-        mInternetConnectivity = LQDevice.getInternetConnectivity(mContext);
+        JSONObject json = mJSON;
+        if (json == null) {
+            synchronized (this) {
+                if (mJSON == null) {
+                    mJSON = buildJSON();
+                }
+                json = mJSON;
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Encoded {@link #toJSON()}, cached as well.
+     *
+     * @return the JSON string, or null if the device couldn't be encoded
+     */
+    public String toJSONString() {
+        String json = mJSONString;
+        if (json == null) {
+            synchronized (this) {
+                if (mJSONString == null) {
+                    JSONObject object = toJSON();
+                    mJSONString = object == null ? null : object.toString();
+                }
+                json = mJSONString;
+            }
+        }
+        return json;
+    }
 
+    private JSONObject buildJSON() {
         HashMap<String, Object> attrs = new HashMap<String, Object>();
-        if(mAttributes != null) {
-            attrs.putAll(mAttributes);
+        HashMap<String, Object> attributes = mAttributes;
+        if(attributes != null) {
+            attrs.putAll(attributes);
         }
         attrs.put("vendor", mVendor);
         attrs.put("platform", "Android");
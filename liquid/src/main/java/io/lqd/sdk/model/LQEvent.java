@@ -34,6 +34,8 @@ public class LQEvent extends LQModel {
     private String mName;
     private HashMap<String,Object> mAttributes;
     private Date mDate;
+    private LQEventTemplate mTemplate;
+    private Object[] mValues;
 
     // Initialization
     public LQEvent(String name, HashMap<String,Object> attributes, Date date){
@@ -51,6 +53,17 @@ public class LQEvent extends LQModel {
         this(name,attributes, new Date());
     }
 
+    /**
+     * An event of a template, with the values already checked by
+     * {@link LQEventTemplate#checkValues(Object[], boolean)}.
+     */
+    public LQEvent(LQEventTemplate template, Object[] values, Date date) {
+        mName = template.getName();
+        mTemplate = template;
+        mValues = values;
+        mDate = date;
+    }
+
     public void setName(String name) {
         if ((name == null) || (name.length() == 0)) {
             mName = UNNAMED_EVENT;
@@ -66,13 +79,14 @@ public class LQEvent extends LQModel {
     // JSON
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
+        HashMap<String,Object> attributes = mTemplate == null ? mAttributes : mTemplate.attributes(mValues);
         try {
-            if(mAttributes != null) {
-                for(String key : mAttributes.keySet()){
-                    if(mAttributes.get(key) instanceof Date) {
-                        json.put(key, LiquidTools.dateToString((Date) mAttributes.get(key)));
+            if(attributes != null) {
+                for(String key : attributes.keySet()){
+                    if(attributes.get(key) instanceof Date) {
+                        json.put(key, LiquidTools.dateToString((Date) attributes.get(key)));
                     } else {
-                        json.put(key, mAttributes.get(key));
+                        json.put(key, attributes.get(key));
                     }
                 }
             }
@@ -86,6 +100,32 @@ public class LQEvent extends LQModel {
         return null;
     }
 
+    /**
+     * Writes the same JSON as {@link #toJSON()}, without building it first.
+     */
+    public void writeJSON(LQJsonWriter writer) throws JSONException {
+        if (mTemplate != null) {
+            mTemplate.writeJSON(writer, mValues, mDate);
+            return;
+        }
+        if (mAttributes != null && (mAttributes.containsKey("name") || mAttributes.containsKey("date"))) {
+            // The fields below replace the attributes in place, leave it to JSONObject
+            JSONObject json = toJSON();
+            if (json == null) {
+                throw new JSONException("Invalid event attributes");
+            }
+            writer.rawValue(json.toString());
+            return;
+        }
+        writer.beginObject();
+        if (mAttributes != null) {
+            writeAttributes(writer, mAttributes);
+        }
+        writer.field("name", mName);
+        writer.field("date", LiquidTools.dateToString(mDate));
+        writer.endObject();
+    }
+
     public static boolean hasValidName(String name, boolean raiseException) {
         boolean valid = name == null || name.length() == 0 || (name.charAt(0) != '_' && !name.contains("$") && !name.contains(".") && !name.contains("\0"));
         if(!valid) {
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk.model;
+
+import org.json.JSONException;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import io.lqd.sdk.LiquidTools;
+
+/**
+ * An event tracked many times with the same name and attribute keys.
+ *
+ * <p>
+ * The name and the keys are validated and encoded once, when the template is
+ * created. Tracking it only checks and encodes the values, given in the same
+ * order as the keys.
+ * </p>
+ */
+public class LQEventTemplate implements Serializable {
+
+    private static final long serialVersionUID = -2914720658196614303L;
+
+    private static final String NAME_FIELD = LQJsonWriter.encodeName("name");
+    private static final String DATE_FIELD = LQJsonWriter.encodeName("date");
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final String mName;
+    private final boolean mValid;
+    // null for the keys that are dropped
+    private final String[] mKeys;
+    private final String[] mEncodedKeys;
+    private final String mEncodedName;
+
+    /**
+     * @param name name of the event, <b>unnamedEvent</b> if null or empty
+     * @param keys keys of the attributes
+     * @param raiseException if true will raise IllegalArgumentException for an invalid name or key, otherwise will Log
+     */
+    public LQEventTemplate(String name, String[] keys, boolean raiseException) {
+        mValid = LQEvent.hasValidName(name, raiseException);
+        mName = (name == null || name.length() == 0) ? LQEvent.UNNAMED_EVENT : name;
+        mEncodedName = LQJsonWriter.encode(mName);
+        int count = keys == null ? 0 : keys.length;
+        mKeys = new String[count];
+        mEncodedKeys = new String[count];
+        HashSet<String> seen = new HashSet<String>();
+        for (int i = 0; i < count; i++) {
+            String key = keys[i];
+            if (key == null) {
+                LiquidTools.exceptionOrLog(raiseException, "Key can't be null");
+            } else if (!LQModel.validKey(key, raiseException)) {
+                continue;
+            } else if (key.equals("name") || key.equals("date")) {
+                LiquidTools.exceptionOrLog(raiseException, "Key: (" + key + ") is reserved for the event");
+            } else if (!seen.add(key)) {
+                LiquidTools.exceptionOrLog(raiseException, "Key: (" + key + ") is repeated");
+            } else {
+                mKeys[i] = key;
+                mEncodedKeys[i] = LQJsonWriter.encodeName(key);
+            }
+        }
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return false if the name is invalid, the events are then not tracked
+     */
+    public boolean isValid() {
+        return mValid;
+    }
+
+    public int getKeyCount() {
+        return mKeys.length;
+    }
+
+    /**
+     * Checks the values given to track the template, the invalid ones are dropped.
+     * <b>values</b> is left as it is, the caller may reuse it.
+     *
+     * @param raiseException if true will raise IllegalArgumentException, otherwise will Log
+     * @return a copy of the values to track, null if their number doesn't match the keys
+     */
+    public Object[] checkValues(Object[] values, boolean raiseException) {
+        if (values == null) {
+            values = NO_VALUES;
+        }
+        int count = values.length;
+        if (count != mKeys.length) {
+            LiquidTools.exceptionOrLog(raiseException, "Event " + mName + " expects " + mKeys.length + " values, got " + count);
+            return null;
+        }
+        if (count > 0) {
+            values = values.clone();
+        }
+        for (int i = 0; i < count; i++) {
+            if (values[i] != null && !LQModel.validValue(values[i], raiseException)) {
+                values[i] = null;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the attributes of an event tracked with the <b>values</b>
+     */
+    HashMap<String, Object> attributes(Object[] values) {
+        HashMap<String, Object> attributes = new HashMap<String, Object>();
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mKeys[i] != null && values[i] != null) {
+                attributes.put(mKeys[i], values[i]);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Writes the same JSON as {@link LQEvent#writeJSON(LQJsonWriter)} with the attributes
+     * of the <b>values</b>, without escaping the name and the keys again.
+     */
+    void writeJSON(LQJsonWriter writer, Object[] values, Date date) throws JSONException {
+        writer.beginObject();
+        for (int i = 0; i < mEncodedKeys.length; i++) {
+            Object value = values[i];
+            if (mEncodedKeys[i] == null || value == null) {
+                continue;
+            }
+            if (value instanceof Date) {
+                value = LiquidTools.dateToString((Date) value);
+            }
+            writer.rawName(mEncodedKeys[i]).value(value);
+        }
+        writer.rawName(NAME_FIELD).rawValue(mEncodedName);
+        writer.rawName(DATE_FIELD).value(LiquidTools.dateToString(date));
+        writer.endObject();
+    }
+}
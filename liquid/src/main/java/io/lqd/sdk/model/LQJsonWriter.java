@@ -0,0 +1,321 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk.model;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Streaming JSON encoder that writes straight into a reusable buffer.
+ *
+ * <p>
+ * The output is the same, byte for byte, as the one of the platform
+ * {@link JSONObject#toString()}: same escaping, same number format, no white space.
+ * Fields with a null value are skipped, as {@link JSONObject#put(String, Object)}
+ * removes them.
+ * </p>
+ *
+ * <p>
+ * Each thread has its own writer, see {@link #obtain()}. The encoded
+ * string must be taken with {@link #toString()} before the writer is obtained again.
+ * </p>
+ */
+public class LQJsonWriter {
+
+    private static final int MAX_DEPTH = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final Double NEGATIVE_ZERO = -0d;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<LQJsonWriter> mWriters = new ThreadLocal<LQJsonWriter>() {
+        @Override
+        protected LQJsonWriter initialValue() {
+            return new LQJsonWriter();
+        }
+    };
+
+    private StringBuilder mOut = new StringBuilder(INITIAL_CAPACITY);
+    // Whether the container at each depth has no element yet
+    private final boolean[] mEmpty = new boolean[MAX_DEPTH + 1];
+    private int mDepth;
+    private boolean mAfterName;
+
+    public LQJsonWriter() {
+        reset();
+    }
+
+    /**
+     * @return the writer of the calling thread, empty
+     */
+    public static LQJsonWriter obtain() {
+        LQJsonWriter writer = mWriters.get();
+        writer.reset();
+        return writer;
+    }
+
+    public void reset() {
+        if (mOut.capacity() > MAX_RETAINED_CAPACITY) {
+            mOut = new StringBuilder(INITIAL_CAPACITY);
+        } else {
+            mOut.setLength(0);
+        }
+        mDepth = 0;
+        mEmpty[0] = true;
+        mAfterName = false;
+    }
+
+    public LQJsonWriter beginObject() {
+        return open('{');
+    }
+
+    public LQJsonWriter endObject() {
+        return close('}');
+    }
+
+    public LQJsonWriter beginArray() {
+        return open('[');
+    }
+
+    public LQJsonWriter endArray() {
+        return close(']');
+    }
+
+    public LQJsonWriter name(String name) {
+        if (!mEmpty[mDepth]) {
+            mOut.append(',');
+        }
+        mEmpty[mDepth] = false;
+        string(name);
+        mOut.append(':');
+        mAfterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a name already encoded with {@link #encodeName(String)}.
+     */
+    public LQJsonWriter rawName(String encodedName) {
+        if (!mEmpty[mDepth]) {
+            mOut.append(',');
+        }
+        mEmpty[mDepth] = false;
+        mOut.append(encodedName);
+        mAfterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a field, unless <b>value</b> is null.
+     */
+    public LQJsonWriter field(String name, Object value) throws JSONException {
+        if (value != null) {
+            checkValue(value);
+            name(name).value(value);
+        }
+        return this;
+    }
+
+    public LQJsonWriter value(String value) {
+        beforeValue();
+        if (value == null) {
+            mOut.append("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    public LQJsonWriter value(long value) {
+        beforeValue();
+        mOut.append(value);
+        return this;
+    }
+
+    public LQJsonWriter value(boolean value) {
+        beforeValue();
+        mOut.append(value);
+        return this;
+    }
+
+    /**
+     * Writes a string, number, boolean, {@link JSONObject} or {@link JSONArray}.
+     * Other objects are written as their {@link Object#toString()}.
+     *
+     * @throws JSONException if <b>value</b> is a NaN or infinite number
+     */
+    public LQJsonWriter value(Object value) throws JSONException {
+        checkValue(value);
+        if (value instanceof JSONObject || value instanceof JSONArray) {
+            return rawValue(value.toString());
+        }
+        beforeValue();
+        if (value == null || value instanceof Boolean || value == JSONObject.NULL) {
+            mOut.append(value);
+        } else if (value instanceof Number) {
+            number((Number) value);
+        } else {
+            string(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Writes an already encoded JSON value as it is.
+     */
+    public LQJsonWriter rawValue(String json) {
+        beforeValue();
+        mOut.append(json);
+        return this;
+    }
+
+    /**
+     * @return a position that can be given to {@link #rollback(long)} to drop
+     * everything written after it
+     */
+    public long mark() {
+        return ((long) mOut.length() << 8) | (mDepth << 1) | (mEmpty[mDepth] ? 1 : 0);
+    }
+
+    public void rollback(long mark) {
+        mOut.setLength((int) (mark >>> 8));
+        mDepth = (int) (mark & 0xff) >> 1;
+        mEmpty[mDepth] = (mark & 1) != 0;
+        mAfterName = false;
+    }
+
+    /**
+     * @return <b>name</b> quoted and escaped, followed by the colon, for {@link #rawName(String)}
+     */
+    public static String encodeName(String name) {
+        return encode(name) + ':';
+    }
+
+    /**
+     * @return <b>value</b> quoted and escaped, for {@link #rawValue(String)}
+     */
+    public static String encode(String value) {
+        LQJsonWriter writer = new LQJsonWriter();
+        writer.string(value);
+        return writer.toString();
+    }
+
+    public int length() {
+        return mOut.length();
+    }
+
+    @Override
+    public String toString() {
+        return mOut.toString();
+    }
+
+    private LQJsonWriter open(char bracket) {
+        if (mDepth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested too deeply");
+        }
+        beforeValue();
+        mOut.append(bracket);
+        mEmpty[++mDepth] = true;
+        return this;
+    }
+
+    private LQJsonWriter close(char bracket) {
+        if (mDepth == 0) {
+            throw new IllegalStateException("Nesting problem");
+        }
+        mDepth--;
+        mOut.append(bracket);
+        return this;
+    }
+
+    private void beforeValue() {
+        if (mAfterName) {
+            mAfterName = false;
+        } else if (mDepth > 0) {
+            if (!mEmpty[mDepth]) {
+                mOut.append(',');
+            }
+            mEmpty[mDepth] = false;
+        }
+    }
+
+    private static void checkValue(Object value) throws JSONException {
+        if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isInfinite(d) || Double.isNaN(d)) {
+                throw new JSONException("Forbidden numeric value: " + d);
+            }
+        }
+    }
+
+    private void number(Number number) {
+        // Same format as JSONObject.numberToString
+        if (number.equals(NEGATIVE_ZERO)) {
+            mOut.append("-0");
+            return;
+        }
+        double doubleValue = number.doubleValue();
+        long longValue = number.longValue();
+        if (doubleValue == (double) longValue) {
+            mOut.append(longValue);
+        } else {
+            mOut.append(number.toString());
+        }
+    }
+
+    private void string(String value) {
+        StringBuilder out = mOut;
+        out.append('"');
+        int start = 0;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c > '\\' || (c >= ' ' && c != '"' && c != '/' && c != '\\')) {
+                continue;
+            }
+            out.append(value, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append('\\').append(c);
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+                    break;
+            }
+        }
+        out.append(value, start, value.length());
+        out.append('"');
+    }
+}
@@ -21,13 +21,18 @@ import android.content.Context;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import io.lqd.sdk.LQLog;
@@ -36,6 +41,17 @@ public class LQLiquidPackage implements Serializable{
 
     private static final long serialVersionUID = 2252438865270376L;
     private static final String LIQUID_PACKAGE_FILENAME = "LiquidPackage";
+    private static final int FORMAT_MAGIC = 0x4C51504B; // "LQPK"
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_JSON_NULL = 1;
+    private static final byte TAG_STRING = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_BOOLEAN = 6;
+    private static final byte TAG_JSON = 7;
 
     private ArrayList<LQValue> mValues = new ArrayList<LQValue>();
 
@@ -110,38 +126,222 @@ public class LQLiquidPackage implements Serializable{
 
     public void saveToDisk(Context context) {
         LQLog.data("Saving to local storage");
+        File file = new File(context.getFilesDir(), LIQUID_PACKAGE_FILENAME + ".bin");
+        File temp = new File(context.getFilesDir(), LIQUID_PACKAGE_FILENAME + ".tmp");
+        DataOutputStream output = null;
         try {
-            FileOutputStream fileOutputStream = context.openFileOutput(
-                    LIQUID_PACKAGE_FILENAME + ".vars",
-                    Context.MODE_PRIVATE);
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(
-                    fileOutputStream);
-            objectOutputStream.writeObject(this);
-            objectOutputStream.flush();
-            objectOutputStream.close();
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            write(output, mValues);
+            output.close();
+            output = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp);
+            }
         } catch (IOException e) {
-            e.printStackTrace();
             LQLog.infoVerbose("Could not save liquid package to file");
+        } finally {
+            try {
+                if (output != null)
+                    output.close();
+            } catch (IOException e) {}
         }
     }
 
     public static LQLiquidPackage loadFromDisk(Context context){
         LQLog.data("Loading from local storage");
+        File file = new File(context.getFilesDir(), LIQUID_PACKAGE_FILENAME + ".bin");
+        if (!file.exists()) {
+            return loadLegacyFromDisk(context);
+        }
+        try {
+            LQLiquidPackage liquidPackage = new LQLiquidPackage();
+            liquidPackage.mValues = read(ByteBuffer.wrap(readFile(file)));
+            return liquidPackage;
+        } catch (IOException e) {
+            LQLog.infoVerbose("Could not load liquid package from file");
+        } catch (BufferUnderflowException e) {
+            LQLog.infoVerbose("Liquid package file is truncated");
+        }
+        return new LQLiquidPackage();
+    }
+
+    /**
+     * Reads the package saved with Java serialization by older versions, and saves it again in the
+     * binary format.
+     */
+    private static LQLiquidPackage loadLegacyFromDisk(Context context) {
+        File legacy = new File(context.getFilesDir(), LIQUID_PACKAGE_FILENAME + ".vars");
+        if (!legacy.exists()) {
+            return new LQLiquidPackage();
+        }
+        LQLiquidPackage liquidPackage = new LQLiquidPackage();
         try {
-            FileInputStream fileInputStream = context
-                    .openFileInput(LIQUID_PACKAGE_FILENAME
-                            + ".vars");
-            ObjectInputStream objectInputStream = new ObjectInputStream(
-                    fileInputStream);
+            ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(legacy));
             Object result = objectInputStream.readObject();
             objectInputStream.close();
-            return (LQLiquidPackage) result;
+            liquidPackage = (LQLiquidPackage) result;
+            liquidPackage.saveToDisk(context);
         } catch (IOException e) {
             LQLog.infoVerbose("Could not load liquid package from file");
         } catch (ClassNotFoundException e) {
             LQLog.infoVerbose("Could not load liquid package from file");
         }
-        return new LQLiquidPackage();
+        legacy.delete();
+        return liquidPackage;
+    }
+
+    /*
+     * Binary format, big endian:
+     *
+     * int magic, byte version, int count, then for each value:
+     *   string id, string target id, boolean default,
+     *   string variable id, string variable name, string variable data type, string variable target id,
+     *   byte value tag, value
+     *
+     * Strings are an int byte length (-1 for null) followed by UTF-8 bytes.
+     */
+
+    // six string lengths, the default flag and the value tag
+    private static final int MIN_VALUE_SIZE = 6 * 4 + 1 + 1;
+
+    private static void write(DataOutputStream output, ArrayList<LQValue> values) throws IOException {
+        output.writeInt(FORMAT_MAGIC);
+        output.writeByte(FORMAT_VERSION);
+        output.writeInt(values.size());
+        for (LQValue value : values) {
+            writeString(output, value.getId());
+            writeString(output, value.getTargetId());
+            output.writeBoolean(value.isDefault());
+            LQVariable variable = value.getVariable();
+            writeString(output, variable == null ? null : variable.getId());
+            writeString(output, variable == null ? null : variable.getName());
+            writeString(output, variable == null ? null : variable.getDataType());
+            writeString(output, variable == null ? null : variable.getTargetId());
+            writeValue(output, value.getValue());
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(TAG_NULL);
+        } else if (value == JSONObject.NULL) {
+            output.writeByte(TAG_JSON_NULL);
+        } else if (value instanceof String) {
+            output.writeByte(TAG_STRING);
+            writeString(output, (String) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TAG_INT);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TAG_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Number) {
+            output.writeByte(TAG_DOUBLE);
+            output.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            output.writeByte(TAG_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else {
+            // JSONObject or JSONArray
+            output.writeByte(TAG_JSON);
+            writeString(output, value.toString());
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        if (string == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static ArrayList<LQValue> read(ByteBuffer input) throws IOException {
+        if (input.getInt() != FORMAT_MAGIC) {
+            throw new IOException("Not a liquid package file");
+        }
+        byte version = input.get();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unknown liquid package version " + version);
+        }
+        int count = input.getInt();
+        if (count < 0 || count > input.remaining() / MIN_VALUE_SIZE) {
+            throw new IOException("Corrupted value count " + count);
+        }
+        ArrayList<LQValue> values = new ArrayList<LQValue>(count);
+        for (int i = 0; i < count; i++) {
+            String id = readString(input);
+            String targetId = readString(input);
+            boolean isDefault = input.get() != 0;
+            LQVariable variable = new LQVariable(readString(input), readString(input), readString(input), readString(input));
+            values.add(new LQValue(id, readValue(input), variable, isDefault, targetId));
+        }
+        return values;
+    }
+
+    private static Object readValue(ByteBuffer input) throws IOException {
+        byte tag = input.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_JSON_NULL:
+                return JSONObject.NULL;
+            case TAG_STRING:
+                return readString(input);
+            case TAG_INT:
+                return input.getInt();
+            case TAG_LONG:
+                return input.getLong();
+            case TAG_DOUBLE:
+                return input.getDouble();
+            case TAG_BOOLEAN:
+                return input.get() != 0;
+            case TAG_JSON:
+                String json = readString(input);
+                if (json == null) {
+                    throw new IOException("Corrupted value: missing JSON");
+                }
+                try {
+                    return new JSONTokener(json).nextValue();
+                } catch (JSONException e) {
+                    throw new IOException("Corrupted value: " + e.getMessage());
+                }
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private static String readString(ByteBuffer input) throws IOException {
+        int length = input.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > input.remaining()) {
+            throw new IOException("Corrupted string length " + length);
+        }
+        String string = new String(input.array(), input.arrayOffset() + input.position(), length, "UTF-8");
+        input.position(input.position() + length);
+        return string;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                int read = input.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                offset += read;
+            }
+        } finally {
+            input.close();
+        }
+        return data;
     }
 
 }
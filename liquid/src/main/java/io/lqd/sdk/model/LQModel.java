@@ -42,6 +42,12 @@ public abstract class LQModel implements Serializable {
 
     private static final long serialVersionUID = 1L;
     private static final String PREF_FILE_NAME = "LQPrefs";
+    private static final int VALID_KEYS_CACHE_SIZE = 256; // power of two
+
+    // Keys already known to be valid, compared by identity: attribute keys are
+    // mostly literals, so the same instances are checked on every call.
+    // Races only cause cache misses, references are written atomically.
+    private static final String[] mValidKeys = new String[VALID_KEYS_CACHE_SIZE];
 
     /**
      * Generate a random unique id
@@ -66,11 +72,19 @@ public abstract class LQModel implements Serializable {
      * @return true if the key is valid, false otherwise
      */
     public static boolean validKey(String key, boolean raiseException) {
-        boolean isValid = (!key.contains("$") && !key.contains(".") && !key.contains("\0"));
-        if(!isValid) {
-            LiquidTools.exceptionOrLog(raiseException, "Key: (" + key + ") contains invalid chars: (. $ \\0)");
+        int slot = key.hashCode() & (VALID_KEYS_CACHE_SIZE - 1);
+        if (mValidKeys[slot] == key) {
+            return true;
         }
-        return isValid;
+        for (int i = 0, length = key.length(); i < length; i++) {
+            char c = key.charAt(i);
+            if (c == '$' || c == '.' || c == '\0') {
+                LiquidTools.exceptionOrLog(raiseException, "Key: (" + key + ") contains invalid chars: (. $ \\0)");
+                return false;
+            }
+        }
+        mValidKeys[slot] = key;
+        return true;
     }
 
     /**
@@ -89,14 +103,33 @@ public abstract class LQModel implements Serializable {
         return isValid;
     }
 
+    /**
+     * Removes the attributes with an invalid key or value.
+     * @param attributes attributes that will be checked
+     * @param raiseException if true will raise IllegalArgumentException, otherwise will Log
+     * @return the valid attributes, <b>attributes</b> itself if it is a HashMap and they are all valid
+     */
     public static HashMap<String, Object> sanitizeAttributes(Map<String, Object> attributes, boolean raiseException) {
         if (attributes == null) {
             return null;
         }
-        HashMap<String, Object> attrs = new HashMap<String, Object>();
-        for (String key : attributes.keySet()) {
-            if (LQModel.validKey(key, raiseException) && LQModel.validValue(attributes.get(key), raiseException)) {
-                attrs.put(key, attributes.get(key));
+        ArrayList<String> invalidKeys = null;
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            String key = attribute.getKey();
+            if (!LQModel.validKey(key, raiseException) || !LQModel.validValue(attribute.getValue(), raiseException)) {
+                if (invalidKeys == null) {
+                    invalidKeys = new ArrayList<String>();
+                }
+                invalidKeys.add(key);
+            }
+        }
+        if (invalidKeys == null && attributes instanceof HashMap) {
+            return (HashMap<String, Object>) attributes;
+        }
+        HashMap<String, Object> attrs = new HashMap<String, Object>(attributes);
+        if (invalidKeys != null) {
+            for (String key : invalidKeys) {
+                attrs.remove(key);
             }
         }
         return attrs;
@@ -112,7 +145,7 @@ public abstract class LQModel implements Serializable {
 
         prefsEditor.putString(split[1], serializedObject);
 
-        LQLog.infoVerbose("Saving " + split[1] + " to shared prefs");
+        LQLog.infoVerbose("Saving %s to shared prefs", split[1]);
         prefsEditor.apply();
     }
 
@@ -128,11 +161,25 @@ public abstract class LQModel implements Serializable {
         try {
             return new JSONObject(retrivedData);
         } catch (JSONException e) {
-            LQLog.infoVerbose("Couldn't retrieve " + split[1] + " from file, probably new user");
+            LQLog.infoVerbose("Couldn't retrieve %s from file, probably new user", split[1]);
         }
         return new JSONObject();
     }
 
+    /**
+     * Writes the <b>attributes</b> as fields of the current object, dates in ISO 8601,
+     * in the same order as {@link JSONObject} would.
+     */
+    protected static void writeAttributes(LQJsonWriter writer, HashMap<String, Object> attributes) throws JSONException {
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            Object value = attribute.getValue();
+            if (value instanceof Date) {
+                value = LiquidTools.dateToString((Date) value);
+            }
+            writer.field(attribute.getKey(), value);
+        }
+    }
+
     protected static HashMap<String, Object> attributesFromJSON(JSONObject object, String[] excludedKeys) {
         HashMap<String, Object> hashMap = new HashMap<>();
 
@@ -21,27 +21,47 @@ import android.os.Build;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 
 import io.lqd.sdk.LQLog;
+import io.lqd.sdk.LQMetrics;
 import io.lqd.sdk.Liquid;
 
 public class LQNetworkRequest extends LQModel {
 
     public static final int HALF_HOUR = 30 * 60 * 1000;
+    private static final int CONNECT_TIMEOUT = 15 * 1000;
+    private static final int READ_TIMEOUT = 30 * 1000;
+    private static final int COMPRESSION_DISABLED = -1;
+
+    // GZIPOutputStream allocates a new native Deflater on every request, reuse one per thread instead
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+    };
+
+    private static volatile int mCompressionThreshold = COMPRESSION_DISABLED;
 
     private static final long serialVersionUID = 7456534930025458866L;
 
@@ -54,6 +74,7 @@ public class LQNetworkRequest extends LQModel {
     private String mJson;
     private int mNumberOfTries;
     private Date mLastTry;
+    private Date mNextTry;
     private SimpleDateFormat mDateFormat;
 
     public LQNetworkRequest(String url, String httpMethod, String json) {
@@ -62,6 +83,7 @@ public class LQNetworkRequest extends LQModel {
         mJson = json;
         mNumberOfTries = 0;
         mLastTry = null;
+        mNextTry = null;
         mDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
     }
 
@@ -82,24 +104,70 @@ public class LQNetworkRequest extends LQModel {
         mNumberOfTries++;
     }
 
+    /**
+     * Sets the last try and waits {@link #HALF_HOUR} before the next one.
+     */
     public void setLastTry(Date lastTry) {
         mLastTry = lastTry;
+        mNextTry = lastTry == null ? null : new Date(lastTry.getTime() + HALF_HOUR);
     }
 
     public Date getLastTry() {
         return mLastTry;
     }
 
+    public Date getNextTry() {
+        return mNextTry;
+    }
+
+    /**
+     * Restores the retry state saved in the queue journal.
+     */
+    public void setRetryState(int numberOfTries, Date lastTry, Date nextTry) {
+        mNumberOfTries = numberOfTries;
+        mLastTry = lastTry;
+        mNextTry = nextTry;
+    }
+
+    /**
+     * Records a failed try at <b>now</b>, to be retried at <b>nextTry</b>.
+     */
+    public void scheduleRetry(Date now, Date nextTry) {
+        mLastTry = now;
+        mNextTry = nextTry;
+        mNumberOfTries++;
+    }
+
+    /**
+     * Compresses the body of the requests with at least <b>minLength</b> characters
+     * and sends them with <code>Content-Encoding: gzip</code>.
+     * Compression is disabled by default.
+     */
+    public static void enableCompression(int minLength) {
+        if (minLength < 0) {
+            throw new IllegalArgumentException("The compression threshold can't be negative");
+        }
+        mCompressionThreshold = minLength;
+    }
+
+    public static void disableCompression() {
+        mCompressionThreshold = COMPRESSION_DISABLED;
+    }
+
+    public static boolean isCompressionEnabled() {
+        return mCompressionThreshold != COMPRESSION_DISABLED;
+    }
+
     public boolean willFlushAndSet(Date now) {
         boolean willflush = canFlush(now);
         if(!willflush) {
-            mLastTry = now;
+            setLastTry(now);
         }
         return willflush;
     }
 
     public boolean canFlush(Date now) {
-        return mLastTry == null ||  now.getTime() - mLastTry.getTime() >= HALF_HOUR;
+        return mNextTry == null || !now.before(mNextTry);
     }
 
     @Override
@@ -110,17 +178,25 @@ public class LQNetworkRequest extends LQModel {
                 ((LQNetworkRequest) o).getJSON().equals(this.getJSON());
     }
 
+    /**
+     * Sends this request. The connection is not disconnected and the response is
+     * always read to the end, so the platform can keep it alive and reuse it.
+     */
     public LQNetworkResponse sendRequest(String token) {
         String response = null;
         String date = mDateFormat.format(Calendar.getInstance().getTime());
         int responseCode = -1;
+        long retryAfter = -1;
+        long bytesSent = 0;
+        InputStream in = null;
         InputStream err = null;
-        BufferedReader boin = null;
-        DataOutputStream outputStream = null;
+        OutputStream outputStream = null;
         HttpURLConnection connection = null;
         try {
             URL url = new URL(this.getUrl());
             connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
             connection.setRequestMethod(this.getHttpMethod());
             connection.setRequestProperty("Date", date);
             connection.setRequestProperty("Authorization", "Token " + token);
@@ -131,23 +207,41 @@ public class LQNetworkRequest extends LQModel {
             connection.setDoInput(true);
             if (this.getJSON() != null) {
                 connection.setDoOutput(true);
-                outputStream = new DataOutputStream(connection.getOutputStream());
-                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"));
-                writer.write(this.getJSON());
-                writer.close();
-                outputStream.close();
+                int threshold = mCompressionThreshold;
+                if (threshold != COMPRESSION_DISABLED && this.getJSON().length() >= threshold) {
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                    connection.setChunkedStreamingMode(0);
+                    GzipBodyStream gzip = new GzipBodyStream(connection.getOutputStream(), DEFLATER.get());
+                    outputStream = gzip;
+                    Writer writer = new OutputStreamWriter(outputStream, "UTF-8");
+                    writer.write(this.getJSON());
+                    writer.close();
+                    bytesSent = gzip.getCompressedLength();
+                } else {
+                    byte[] body = this.getJSON().getBytes("UTF-8");
+                    connection.setFixedLengthStreamingMode(body.length);
+                    outputStream = connection.getOutputStream();
+                    outputStream.write(body);
+                    outputStream.close();
+                    bytesSent = body.length;
+                }
             }
             responseCode = connection.getResponseCode();
+            retryAfter = parseRetryAfter(connection.getHeaderField("Retry-After"));
             err = connection.getErrorStream();
-            GZIPInputStream gzip = new GZIPInputStream(connection.getInputStream());
-            boin = new BufferedReader(new InputStreamReader(gzip, "UTF-8"));
-            response = boin.readLine();
+            in = connection.getInputStream();
+            response = readFully(new GZIPInputStream(in));
         } catch (IOException e) {
-            LQLog.http("Failed due to " + e + " responseCode " + responseCode);
-            LQLog.http("Error " + inputStreamToString(err));
+            LQLog.http("Failed due to %s responseCode %d", e, responseCode);
+            // the error body is always read to the end, so the connection can be reused
+            if (LQLog.isLoggable(LQLog.HTTP)) {
+                ByteArrayOutputStream error = new ByteArrayOutputStream();
+                drain(err, error);
+                LQLog.http("Error " + decodeErrorBody(error.toByteArray()));
+            } else {
+                drain(err, null);
+            }
         } finally {
-            if(connection != null)
-                connection.disconnect();
             try {
                 if(outputStream != null)
                     outputStream.close();
@@ -157,33 +251,161 @@ public class LQNetworkRequest extends LQModel {
                     err.close();
             } catch (IOException e) {}
             try {
-                if (boin != null)
-                    boin.close();
+                if (in != null)
+                    in.close();
             } catch (IOException e) {}
         }
+        if (LQMetrics.isEnabled()) {
+            LQMetrics.add(LQMetrics.BYTES_SENT, bytesSent);
+            LQMetrics.increment(LQMetrics.HTTP_STATUS + (responseCode < 0 ? "none" : String.valueOf(responseCode)));
+        }
         if ((response != null) || ((responseCode >= 200) && (responseCode < 300))) {
-            LQLog.http("HTTP Success " + response);
+            LQLog.http("HTTP Success %s", response);
             return new LQNetworkResponse(responseCode, response);
         }
-        return new LQNetworkResponse(responseCode);
+        return new LQNetworkResponse(responseCode, null, retryAfter);
+    }
+
+    /**
+     * Retry-After is either a number of seconds or an HTTP date.
+     *
+     * @return the delay in milliseconds, or -1
+     */
+    private long parseRetryAfter(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                return Math.max(0, mDateFormat.parse(value.trim()).getTime() - System.currentTimeMillis());
+            } catch (ParseException pe) {
+                return -1;
+            }
+        }
+    }
+
+    private static String readFully(InputStream stream) throws IOException {
+        Reader reader = new InputStreamReader(stream, "UTF-8");
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[1024];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
+        }
+        reader.close();
+        return sb.toString().trim();
+    }
+
+    private static Date parseLegacyDate(String date) {
+        try {
+            return new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US).parse(date);
+        } catch (ParseException e) {
+            return null;
+        }
     }
 
-    private static String inputStreamToString(final InputStream stream) {
-        if(stream == null) {
-            return "";
+    /**
+     * Reads <b>stream</b> to the end, copying it to <b>out</b> unless it is null.
+     */
+    private static void drain(InputStream stream, ByteArrayOutputStream out) {
+        if (stream == null) {
+            return;
         }
+        byte[] buffer = new byte[1024];
         try {
-            BufferedReader br = new BufferedReader(new InputStreamReader(
-                    new GZIPInputStream(stream)));
-            StringBuilder sb = new StringBuilder();
-            String line = null;
-            while ((line = br.readLine()) != null) {
-                sb.append(line + "\n");
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                if (out != null) {
+                    out.write(buffer, 0, read);
+                }
             }
-            br.close();
-            return sb.toString();
+        } catch (IOException e) {}
+    }
+
+    private static String decodeErrorBody(byte[] body) {
+        try {
+            return readFully(new GZIPInputStream(new ByteArrayInputStream(body)));
         } catch (IOException e) {
-            return "";
+            // not compressed
+            try {
+                return new String(body, "UTF-8").trim();
+            } catch (IOException unsupported) {
+                return "";
+            }
+        }
+    }
+
+    /**
+     * Writes the gzip format around a raw deflate stream, using the given {@link Deflater}
+     * instead of allocating a new one like {@link java.util.zip.GZIPOutputStream}.
+     */
+    private static class GzipBodyStream extends OutputStream {
+
+        private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+        private final OutputStream mOut;
+        private final Deflater mDeflater;
+        private final DeflaterOutputStream mDeflated;
+        private final CRC32 mCrc = new CRC32();
+        private int mLength;
+        private long mCompressedLength;
+        private boolean mClosed;
+
+        GzipBodyStream(OutputStream out, Deflater deflater) throws IOException {
+            mOut = out;
+            mDeflater = deflater;
+            mDeflater.reset();
+            mDeflated = new DeflaterOutputStream(out, deflater, 8192);
+            mOut.write(HEADER);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            mDeflated.write(b);
+            mCrc.update(b);
+            mLength++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            mDeflated.write(b, off, len);
+            mCrc.update(b, off, len);
+            mLength += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            try {
+                mDeflated.finish();
+                mCompressedLength = HEADER.length + mDeflater.getBytesWritten() + 8;
+                byte[] trailer = new byte[8];
+                writeInt((int) mCrc.getValue(), trailer, 0);
+                writeInt(mLength, trailer, 4);
+                mOut.write(trailer);
+                mOut.close();
+            } finally {
+                mDeflater.reset();
+            }
+        }
+
+        /**
+         * @return the number of bytes written to the underlying stream, once closed
+         */
+        long getCompressedLength() {
+            return mCompressedLength;
+        }
+
+        private static void writeInt(int value, byte[] buffer, int offset) {
+            buffer[offset] = (byte) value;
+            buffer[offset + 1] = (byte) (value >> 8);
+            buffer[offset + 2] = (byte) (value >> 16);
+            buffer[offset + 3] = (byte) (value >> 24);
         }
     }
 
@@ -194,6 +416,20 @@ public class LQNetworkRequest extends LQModel {
             String mHttpMethod = jsonObject.getString("mHttpMethod");
             String mJson = jsonObject.getString("mJson");
             lqNetworkRequest = new LQNetworkRequest(mUrl, mHttpMethod, mJson);
+
+            Object lastTry = jsonObject.opt("mLastTry");
+            if (lastTry instanceof Number) {
+                lqNetworkRequest.mLastTry = new Date(((Number) lastTry).longValue());
+            } else if (lastTry instanceof String) {
+                // Older versions saved Date.toString()
+                lqNetworkRequest.setLastTry(parseLegacyDate((String) lastTry));
+            }
+            if (jsonObject.has("mNextTry")) {
+                lqNetworkRequest.mNextTry = new Date(jsonObject.getLong("mNextTry"));
+            } else if (lqNetworkRequest.mLastTry != null) {
+                lqNetworkRequest.setLastTry(lqNetworkRequest.mLastTry);
+            }
+            lqNetworkRequest.mNumberOfTries = jsonObject.optInt("mNumberOfTries", 0);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -208,7 +444,12 @@ public class LQNetworkRequest extends LQModel {
             json.put("mHttpMethod", mHttpMethod);
             json.put("mJson", mJson);
             json.put("mNumberOfTries", mNumberOfTries);
-            json.put("mLastTry", mLastTry);
+            if (mLastTry != null) {
+                json.put("mLastTry", mLastTry.getTime());
+            }
+            if (mNextTry != null) {
+                json.put("mNextTry", mNextTry.getTime());
+            }
             return json;
         } catch (JSONException e) {
             e.printStackTrace();
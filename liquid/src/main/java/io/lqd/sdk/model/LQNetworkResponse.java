@@ -19,6 +19,7 @@ public class LQNetworkResponse {
 
     private int mHttpCode;
     private String mData;
+    private long mRetryAfter;
 
     public LQNetworkResponse() {
         this(-1);
@@ -29,8 +30,13 @@ public class LQNetworkResponse {
     }
 
     public LQNetworkResponse(int httpCode, String response) {
+        this(httpCode, response, -1);
+    }
+
+    public LQNetworkResponse(int httpCode, String response, long retryAfter) {
         mHttpCode = httpCode;
         mData = response;
+        mRetryAfter = retryAfter;
     }
 
     public int getHttpCode() {
@@ -49,4 +55,12 @@ public class LQNetworkResponse {
         return mHttpCode == 401 || mHttpCode == 403;
     }
 
+    /**
+     * @return the delay asked by the server with the <code>Retry-After</code> header,
+     *         in milliseconds, or -1 if there was none
+     */
+    public long getRetryAfter() {
+        return mRetryAfter;
+    }
+
 }
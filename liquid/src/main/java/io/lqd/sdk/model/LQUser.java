@@ -34,7 +34,8 @@ public class LQUser extends LQModel {
 
     private String mIdentifier;
     private boolean mIdentified;
-    private HashMap<String, Object> mAttributes = new HashMap<String, Object>();
+    // Never mutated in place, so snapshots can share it
+    private volatile HashMap<String, Object> mAttributes = new HashMap<String, Object>();
 
     public LQUser(String identifier) {
         this(identifier, new HashMap<String,Object>());
@@ -87,13 +88,24 @@ public class LQUser extends LQModel {
         return new HashMap<String, Object>(mAttributes);
     }
 
-    public void setAttributes(HashMap<String, Object> attributes) {
-        mAttributes = attributes;
+    public synchronized void setAttributes(HashMap<String, Object> attributes) {
+        mAttributes = attributes == null ? null : new HashMap<String, Object>(attributes);
         attributesCheck();
     }
 
-    public Object setAttribute(String key, Object attribute) {
-        return mAttributes.put(key, attribute);
+    public synchronized Object setAttribute(String key, Object attribute) {
+        HashMap<String, Object> attributes = new HashMap<String, Object>(mAttributes);
+        Object previous = attributes.put(key, attribute);
+        mAttributes = attributes;
+        return previous;
+    }
+
+    /**
+     * Returns a copy of this user that is not affected by later changes.
+     * Runs in constant time, the attributes map is shared and never mutated.
+     */
+    public LQUser snapshot() {
+        return new LQUser(mIdentifier, mAttributes, mIdentified);
     }
 
     public Object attributeForKey(String key) {
@@ -103,13 +115,14 @@ public class LQUser extends LQModel {
     // JSON
     public JSONObject toJSON() {
         JSONObject json = new JSONObject();
+        HashMap<String, Object> attributes = mAttributes;
         try {
-            if(mAttributes != null) {
-                for(String key : mAttributes.keySet()) {
-                    if(mAttributes.get(key) instanceof Date) {
-                        json.put(key, LiquidTools.dateToString((Date) mAttributes.get(key)));
+            if(attributes != null) {
+                for(String key : attributes.keySet()) {
+                    if(attributes.get(key) instanceof Date) {
+                        json.put(key, LiquidTools.dateToString((Date) attributes.get(key)));
                     } else {
-                        json.put(key, mAttributes.get(key));
+                        json.put(key, attributes.get(key));
                     }
                 }
             }
@@ -124,6 +137,29 @@ public class LQUser extends LQModel {
 
 
 
+    /**
+     * Writes the same JSON as {@link #toJSON()}, without building it first.
+     */
+    public void writeJSON(LQJsonWriter writer) throws JSONException {
+        HashMap<String, Object> attributes = mAttributes;
+        if (attributes != null && (attributes.containsKey("unique_id") || attributes.containsKey("identified"))) {
+            // The fields below replace the attributes in place, leave it to JSONObject
+            JSONObject json = toJSON();
+            if (json == null) {
+                throw new JSONException("Invalid user attributes");
+            }
+            writer.rawValue(json.toString());
+            return;
+        }
+        writer.beginObject();
+        if (attributes != null) {
+            writeAttributes(writer, attributes);
+        }
+        writer.field("unique_id", mIdentifier);
+        writer.name("identified").value(mIdentified);
+        writer.endObject();
+    }
+
     public static LQModel fromJSON(JSONObject jsonObject) {
         try {
             String unique_id = jsonObject.getString("unique_id");
@@ -49,6 +49,14 @@ public class LQValue implements Serializable {
         }
     }
 
+    public LQValue(String id, Object value, LQVariable variable, boolean isDefault, String targetId) {
+        mId = id;
+        mValue = value;
+        mVariable = variable;
+        mIsDefault = isDefault;
+        mTargetId = targetId;
+    }
+
     public Object getValue() {
         return mValue;
     }
@@ -98,6 +106,13 @@ public class LQValue implements Serializable {
         return null;
     }
 
+    public void writeJSON(LQJsonWriter writer) throws JSONException {
+        writer.beginObject();
+        writer.field("id", mId);
+        writer.field("target_id", mTargetId);
+        writer.endObject();
+    }
+
     public static HashMap<String,LQValue> convertToHashMap(ArrayList<LQValue> values){
         HashMap<String,LQValue> hashMap = new HashMap<String, LQValue>();
         for(LQValue value : values) {
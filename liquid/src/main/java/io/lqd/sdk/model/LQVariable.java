@@ -51,6 +51,17 @@ public class LQVariable implements Serializable {
         }
     }
 
+    public LQVariable(String id, String name, String dataType, String targetId) {
+        mId = id;
+        mName = name;
+        mDataType = dataType;
+        mTargetId = targetId;
+    }
+
+    public String getId() {
+        return mId;
+    }
+
     public String getName() {
         return mName;
     }
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2014-present Liquid Data Intelligence S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.lqd.sdk.model;
+
+import android.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import io.lqd.sdk.LiquidTools;
+
+/**
+ * The applied values of a {@link LQLiquidPackage}, indexed by variable name.
+ *
+ * <p>
+ * Every value is parsed once, when the store is built, into a slot of its
+ * variable type, so reading a variable is a single map lookup with no parsing.
+ * A store never changes after it is built.
+ * </p>
+ */
+public class LQVariableStore {
+
+    public static final int UNKNOWN = 0;
+    public static final int STRING = 1;
+    public static final int INT = 2;
+    public static final int FLOAT = 3;
+    public static final int BOOLEAN = 4;
+    public static final int COLOR = 5;
+    public static final int DATE = 6;
+
+    private final HashMap<String, Entry> mEntries;
+
+    public LQVariableStore() {
+        mEntries = new HashMap<String, Entry>();
+    }
+
+    public LQVariableStore(ArrayList<LQValue> values) {
+        mEntries = new HashMap<String, Entry>(values.size() * 2);
+        for (LQValue value : values) {
+            if (value.getValue() != null && value.getVariable().getName() != null) {
+                mEntries.put(value.getVariable().getName(), new Entry(value));
+            }
+        }
+    }
+
+    /**
+     * @return the entry of the variable, or null if it has no value
+     */
+    public Entry get(String variableKey) {
+        return mEntries.get(variableKey);
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    static int typeOf(String dataType) {
+        if (LQVariable.STRING_TYPE.equals(dataType)) {
+            return STRING;
+        } else if (LQVariable.INT_TYPE.equals(dataType)) {
+            return INT;
+        } else if (LQVariable.FLOAT_TYPE.equals(dataType)) {
+            return FLOAT;
+        } else if (LQVariable.BOOLEAN_TYPE.equals(dataType)) {
+            return BOOLEAN;
+        } else if (LQVariable.COLOR_TYPE.equals(dataType)) {
+            return COLOR;
+        } else if (LQVariable.DATE_TYPE.equals(dataType)) {
+            return DATE;
+        }
+        return UNKNOWN;
+    }
+
+    public static class Entry {
+
+        private final int mType;
+        private final boolean mParsed;
+        private final String mString;
+        // int and color values
+        private final int mInt;
+        private final float mFloat;
+        private final boolean mBoolean;
+        // epoch milliseconds
+        private final long mDate;
+
+        Entry(LQValue value) {
+            mType = typeOf(value.getDataType());
+            Object raw = value.getValue();
+            String string = raw.toString();
+            int intValue = 0;
+            float floatValue = 0;
+            long date = 0;
+            boolean parsed = true;
+            try {
+                switch (mType) {
+                    case INT:
+                        intValue = Integer.parseInt(string);
+                        break;
+                    case FLOAT:
+                        floatValue = Float.parseFloat(string);
+                        break;
+                    case COLOR:
+                        intValue = Color.parseColor(string);
+                        break;
+                    case DATE:
+                        if (!(raw instanceof String)) {
+                            throw new IllegalArgumentException("Not a date: " + raw);
+                        }
+                        date = LiquidTools.stringToDate(string).getTime();
+                        break;
+                    default:
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException included
+                parsed = false;
+            }
+            mParsed = parsed;
+            mString = string;
+            mInt = intValue;
+            mFloat = floatValue;
+            mBoolean = Boolean.parseBoolean(string);
+            mDate = date;
+        }
+
+        public int getType() {
+            return mType;
+        }
+
+        /**
+         * @return true if the value is of <b>type</b> and could be parsed
+         */
+        public boolean is(int type) {
+            return mType == type && mParsed;
+        }
+
+        public String getString() {
+            return mString;
+        }
+
+        public int getInt() {
+            return mInt;
+        }
+
+        public float getFloat() {
+            return mFloat;
+        }
+
+        public boolean getBoolean() {
+            return mBoolean;
+        }
+
+        public int getColor() {
+            return mInt;
+        }
+
+        public long getDate() {
+            return mDate;
+        }
+    }
+}
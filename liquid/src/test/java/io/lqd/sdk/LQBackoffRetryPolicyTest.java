@@ -0,0 +1,53 @@
+package io.lqd.sdk;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Date;
+
+import io.lqd.sdk.factory.FactoryGirl;
+import io.lqd.sdk.model.LQNetworkRequest;
+import io.lqd.sdk.model.LQNetworkResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQBackoffRetryPolicyTest {
+
+    private LQBackoffRetryPolicy policy = new LQBackoffRetryPolicy(1000, 8000, 5);
+    private Date now = new Date();
+
+    @Test
+    public void testDropsPermanentErrors() {
+        assertNull(policy.nextTry(FactoryGirl.createRequest(), new LQNetworkResponse(422), now));
+        assertNull(policy.nextTry(FactoryGirl.createRequest(), new LQNetworkResponse(400), now));
+    }
+
+    @Test
+    public void testRetriesForbiddenOnNextFlush() {
+        assertEquals(now, policy.nextTry(FactoryGirl.createRequest(), new LQNetworkResponse(401), now));
+    }
+
+    @Test
+    public void testBacksOffExponentially() {
+        LQNetworkRequest request = FactoryGirl.createRequest();
+        long[] limits = { 1000, 2000, 4000, 8000, 8000 };
+        for (long limit : limits) {
+            long delay = policy.nextTry(request, new LQNetworkResponse(-1), now).getTime() - now.getTime();
+            assertTrue(delay >= limit / 2 && delay <= limit);
+            request.incrementNumberOfTries();
+        }
+        assertNull(policy.nextTry(request, new LQNetworkResponse(500), now));
+    }
+
+    @Test
+    public void testHonoursRetryAfter() {
+        Date next = policy.nextTry(FactoryGirl.createRequest(), new LQNetworkResponse(429, null, 3000), now);
+        assertEquals(now.getTime() + 3000, next.getTime());
+    }
+}
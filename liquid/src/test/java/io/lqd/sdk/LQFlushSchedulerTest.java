@@ -0,0 +1,67 @@
+package io.lqd.sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQFlushSchedulerTest {
+
+    private CountDownLatch flushes;
+    private LQFlushScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        flushes = new CountDownLatch(1);
+        scheduler = new LQFlushScheduler(new Runnable() {
+            @Override
+            public void run() {
+                flushes.countDown();
+            }
+        }, 2);
+        scheduler.setConnectivity("WiFi");
+    }
+
+    @Test
+    public void testNothingScheduledUntilStarted() {
+        assertEquals(-1, scheduler.delay(1));
+        scheduler.setForeground(true);
+        assertEquals(2000, scheduler.delay(1));
+    }
+
+    @Test
+    public void testCadenceAdapts() {
+        scheduler.setForeground(false);
+        assertEquals(60000, scheduler.delay(1));
+        scheduler.setConnectivity(LQFlushScheduler.CELLULAR);
+        assertEquals(240000, scheduler.delay(1));
+        assertEquals(0, scheduler.delay(100));
+        scheduler.setConnectivity(LQFlushScheduler.NO_CONNECTIVITY);
+        assertEquals(-1, scheduler.delay(100));
+    }
+
+    @Test
+    public void testCoalescesPendingFlushes() {
+        assertTrue(scheduler.requestFlush());
+        assertFalse(scheduler.requestFlush());
+        scheduler.flushStarted();
+        assertTrue(scheduler.requestFlush());
+    }
+
+    @Test
+    public void testWakesUpWhenWorkIsQueued() throws InterruptedException {
+        scheduler.setForeground(true);
+        scheduler.scheduleWork(100);
+        assertTrue(flushes.await(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,157 @@
+package io.lqd.sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+
+import io.lqd.sdk.factory.FactoryGirl;
+import io.lqd.sdk.model.LQNetworkRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQJournalTest {
+
+    private File directory;
+    private LQJournal journal;
+
+    @Before
+    public void setUp() {
+        directory = new File(Robolectric.application.getFilesDir(), "journal_test");
+        journal = new LQJournal(directory);
+        journal.clear();
+    }
+
+    @Test
+    public void testReplayPendingRequests() {
+        LQNetworkRequest r1 = FactoryGirl.createRequest();
+        LQNetworkRequest r2 = FactoryGirl.createRequest();
+        LQNetworkRequest r3 = FactoryGirl.createRequest();
+        journal.append(r1);
+        journal.append(r2);
+        journal.append(r3);
+        journal.acknowledge(r2);
+        journal.commit();
+
+        ArrayList<LQNetworkRequest> replayed = new LQJournal(directory).open();
+        assertEquals(2, replayed.size());
+        assertEquals(r1, replayed.get(0));
+        assertEquals(r3, replayed.get(1));
+    }
+
+    @Test
+    public void testDeletesAcknowledgedSegments() {
+        ArrayList<LQNetworkRequest> requests = new ArrayList<LQNetworkRequest>();
+        for (int i = 0; i < 2000; ++i) {
+            LQNetworkRequest request = FactoryGirl.createRequest();
+            requests.add(request);
+            journal.append(request);
+        }
+        for (LQNetworkRequest request : requests) {
+            journal.acknowledge(request);
+        }
+        journal.commit();
+
+        // only the active segment and the commit offset are kept
+        assertEquals(2, directory.list().length);
+        assertEquals(0, new LQJournal(directory).open().size());
+    }
+
+    @Test
+    public void testIgnoresTruncatedRecord() throws IOException {
+        LQNetworkRequest r1 = FactoryGirl.createRequest();
+        journal.append(r1);
+
+        FileOutputStream output = new FileOutputStream(new File(directory, "segment-0"), true);
+        output.write(new byte[] { 0, 0, 1, 0, 42 });
+        output.close();
+
+        LQJournal reopened = new LQJournal(directory);
+        assertEquals(1, reopened.open().size());
+
+        reopened.append(FactoryGirl.createRequest());
+        assertEquals(2, new LQJournal(directory).open().size());
+    }
+
+    @Test
+    public void testReplayRetryState() {
+        Date now = new Date();
+        LQNetworkRequest r1 = FactoryGirl.createRequest();
+        LQNetworkRequest r2 = FactoryGirl.createRequest();
+        r2.scheduleRetry(new Date(now.getTime() - 1000), new Date(now.getTime() + 60000));
+        journal.append(r1);
+        journal.append(r2);
+        r1.scheduleRetry(now, new Date(now.getTime() + 30000));
+        r1.scheduleRetry(now, new Date(now.getTime() + 90000));
+        journal.retry(r1);
+
+        ArrayList<LQNetworkRequest> replayed = new LQJournal(directory).open();
+        assertEquals(2, replayed.get(0).getNumberOfTries());
+        assertEquals(now, replayed.get(0).getLastTry());
+        assertEquals(new Date(now.getTime() + 90000), replayed.get(0).getNextTry());
+        assertEquals(1, replayed.get(1).getNumberOfTries());
+        assertEquals(new Date(now.getTime() + 60000), replayed.get(1).getNextTry());
+        assertFalse(replayed.get(1).canFlush(now));
+    }
+
+    @Test
+    public void testClear() {
+        journal.append(FactoryGirl.createRequest());
+        journal.clear();
+        assertEquals(0, new LQJournal(directory).open().size());
+    }
+
+    @Test
+    public void testStoresBodyVerbatim() throws IOException {
+        String body = "{\"name\":\"caf\u00e9 \\\"quoted\\\"\",\"url\":\"http:\\/\\/lqd.io\"}";
+        LQNetworkRequest request = new LQNetworkRequest("https://api.lqd.io/collect/users/1/data_points", "POST", body);
+        journal.append(request);
+        journal.append(new LQNetworkRequest("https://api.lqd.io/collect/users/1", "GET", null));
+
+        // the body is stored as it is, without escaping
+        byte[] segment = new byte[(int) new File(directory, "segment-0").length()];
+        DataInputStream input = new DataInputStream(new FileInputStream(new File(directory, "segment-0")));
+        input.readFully(segment);
+        input.close();
+        assertTrue(new String(segment, "UTF-8").contains(body));
+
+        ArrayList<LQNetworkRequest> replayed = new LQJournal(directory).open();
+        assertEquals(2, replayed.size());
+        assertEquals(body, replayed.get(0).getJSON());
+        assertEquals("POST", replayed.get(0).getHttpMethod());
+        assertNull(replayed.get(1).getJSON());
+        assertEquals("GET", replayed.get(1).getHttpMethod());
+    }
+
+    @Test
+    public void testSkipsRequestsTooLargeForARecord() {
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 300 * 1024) {
+            body.append("0123456789");
+        }
+        LQNetworkRequest large = new LQNetworkRequest("https://api.lqd.io/collect/data_points", "POST", body.toString());
+        LQNetworkRequest small = FactoryGirl.createRequest();
+        journal.append(large);
+        journal.append(small);
+        assertEquals(1, journal.size());
+
+        ArrayList<LQNetworkRequest> replayed = new LQJournal(directory).open();
+        assertEquals(1, replayed.size());
+        assertEquals(small, replayed.get(0));
+    }
+}
@@ -0,0 +1,74 @@
+package io.lqd.sdk;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQLaneTest {
+
+    @Test
+    public void testSerialLaneKeepsOrder() throws InterruptedException {
+        LQLane lane = new LQLane("test", 1);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; ++i) {
+            final int n = i;
+            lane.execute(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(n);
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+        lane.shutdown();
+    }
+
+    @Test
+    public void testRecordsQueueWait() throws InterruptedException {
+        LQLane lane = new LQLane("test", 1);
+        final CountDownLatch done = new CountDownLatch(2);
+        lane.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        });
+        lane.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        LQLane.Stats stats = lane.getStats();
+        assertEquals("test", stats.getName());
+        assertEquals(2, stats.getExecutedCount());
+        assertEquals(0, stats.getPendingCount());
+        assertTrue(stats.getMaxWaitMillis() >= 40);
+        assertTrue(stats.getAverageWaitMillis() <= stats.getMaxWaitMillis());
+        lane.shutdown();
+    }
+}
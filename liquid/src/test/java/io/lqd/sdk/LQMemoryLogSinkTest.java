@@ -0,0 +1,94 @@
+package io.lqd.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQMemoryLogSinkTest {
+
+    private LQMemoryLogSink sink;
+
+    @Before
+    public void setUp() {
+        sink = new LQMemoryLogSink(4);
+    }
+
+    @After
+    public void tearDown() {
+        LQLog.removeSink(sink);
+        LQLog.setLevel(LQLog.WARNING);
+    }
+
+    @Test
+    public void testRoundsCapacityToPowerOfTwo() {
+        assertEquals(8, new LQMemoryLogSink(5).capacity());
+        assertEquals(1, new LQMemoryLogSink(1).capacity());
+    }
+
+    @Test
+    public void testKeepsLastRecords() {
+        for (int i = 0; i < 6; i++) {
+            sink.log(LQLog.INFO, "message " + i);
+        }
+        ArrayList<LQMemoryLogSink.Record> records = sink.getRecords();
+        assertEquals(4, records.size());
+        assertEquals("message 2", records.get(0).getMessage());
+        assertEquals("message 5", records.get(3).getMessage());
+        assertEquals(LQLog.INFO, records.get(0).getLevel());
+        assertEquals(Thread.currentThread().getName(), records.get(0).getThread());
+    }
+
+    @Test
+    public void testReceivesLoggedMessages() {
+        LQLog.setLevel(LQLog.INFO);
+        LQLog.addSink(sink);
+        LQLog.addSink(sink);
+        LQLog.info("Flushing %d requests", 3);
+        LQLog.infoVerbose("Not logged");
+        LQLog.removeSink(sink);
+        LQLog.error("Not received");
+
+        ArrayList<LQMemoryLogSink.Record> records = sink.getRecords();
+        assertEquals(1, records.size());
+        assertEquals("Flushing 3 requests", records.get(0).getMessage());
+        assertTrue(sink.dump().endsWith("[" + Thread.currentThread().getName() + "] Flushing 3 requests\n"));
+    }
+
+    @Test
+    public void testConcurrentLogging() throws InterruptedException {
+        final LQMemoryLogSink large = new LQMemoryLogSink(64);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        large.log(LQLog.DATA, "record");
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(64, large.getRecords().size());
+    }
+
+    @Test
+    public void testClear() {
+        sink.log(LQLog.ERROR, "message");
+        sink.clear();
+        assertEquals(0, sink.getRecords().size());
+    }
+}
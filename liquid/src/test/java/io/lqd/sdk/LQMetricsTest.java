@@ -0,0 +1,102 @@
+package io.lqd.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQMetricsTest {
+
+    @Before
+    public void setUp() {
+        LQMetrics.reset();
+        LQMetrics.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        LQMetrics.setEnabled(false);
+        LQMetrics.reset();
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        LQMetrics.setEnabled(false);
+        LQMetrics.increment(LQMetrics.DROPPED);
+        LQMetrics.setGauge(LQMetrics.QUEUE_DEPTH, 3);
+        LQMetrics.record(LQMetrics.FLUSH_TIME, 10);
+        assertEquals(0, LQMetrics.start());
+
+        LQMetrics.Snapshot snapshot = LQMetrics.snapshot();
+        assertEquals(0, snapshot.getCounter(LQMetrics.DROPPED));
+        assertEquals(-1, snapshot.getGauge(LQMetrics.QUEUE_DEPTH));
+        assertNull(snapshot.getHistogram(LQMetrics.FLUSH_TIME));
+    }
+
+    @Test
+    public void testCountersAndGauges() {
+        LQMetrics.increment(LQMetrics.RETRIED);
+        LQMetrics.add(LQMetrics.BYTES_SENT, 100);
+        LQMetrics.add(LQMetrics.BYTES_SENT, 50);
+        LQMetrics.setGauge(LQMetrics.QUEUE_DEPTH, 7);
+        LQMetrics.setGauge(LQMetrics.QUEUE_DEPTH, 4);
+
+        LQMetrics.Snapshot snapshot = LQMetrics.snapshot();
+        assertEquals(1, snapshot.getCounter(LQMetrics.RETRIED));
+        assertEquals(150, snapshot.getCounter(LQMetrics.BYTES_SENT));
+        assertEquals(4, snapshot.getGauge(LQMetrics.QUEUE_DEPTH));
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        for (int i = 1; i <= 100; i++) {
+            LQMetrics.record(LQMetrics.TRACK_TIME, i);
+        }
+        LQMetrics.HistogramSnapshot histogram = LQMetrics.snapshot().getHistogram(LQMetrics.TRACK_TIME);
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        long median = histogram.getPercentile(0.5);
+        assertTrue(median >= 50 && median < 100);
+        assertEquals(100, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void testSnapshotIsNotUpdated() {
+        LQMetrics.increment(LQMetrics.REJECTED);
+        LQMetrics.Snapshot snapshot = LQMetrics.snapshot();
+        LQMetrics.increment(LQMetrics.REJECTED);
+        assertEquals(1, snapshot.getCounter(LQMetrics.REJECTED));
+        assertEquals(2, LQMetrics.snapshot().getCounter(LQMetrics.REJECTED));
+    }
+
+    @Test
+    public void testListenersAreNotified() {
+        final ArrayList<LQMetrics.Snapshot> reported = new ArrayList<LQMetrics.Snapshot>();
+        LQMetrics.Listener listener = new LQMetrics.Listener() {
+            @Override
+            public void onMetrics(LQMetrics.Snapshot snapshot) {
+                reported.add(snapshot);
+            }
+        };
+        LQMetrics.addListener(listener);
+        LQMetrics.increment(LQMetrics.DROPPED);
+        LQMetrics.report();
+        LQMetrics.removeListener(listener);
+        LQMetrics.report();
+
+        assertEquals(1, reported.size());
+        assertEquals(1, reported.get(0).getCounter(LQMetrics.DROPPED));
+    }
+}
@@ -0,0 +1,70 @@
+package io.lqd.sdk;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQRingBufferTest {
+
+    private LQRingBuffer<Integer> buffer;
+
+    @Before
+    public void setUp() {
+        buffer = new LQRingBuffer<Integer>(3);
+    }
+
+    @Test
+    public void testOfferAndPollKeepOrder() {
+        buffer.offer(1);
+        buffer.offer(2);
+        assertEquals(Integer.valueOf(1), buffer.poll());
+        assertEquals(Integer.valueOf(2), buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testDropsOldestWhenFull() {
+        assertNull(buffer.offer(1));
+        assertNull(buffer.offer(2));
+        assertNull(buffer.offer(3));
+        assertEquals(Integer.valueOf(1), buffer.offer(4));
+        assertEquals(3, buffer.size());
+        assertEquals(Integer.valueOf(2), buffer.peek());
+    }
+
+    @Test
+    public void testIndexedAccessAfterWrapAround() {
+        for (int i = 0; i < 5; ++i) {
+            buffer.offer(i);
+        }
+        assertEquals(Integer.valueOf(2), buffer.get(0));
+        assertEquals(Integer.valueOf(4), buffer.get(2));
+
+        ArrayList<Integer> batch = new ArrayList<Integer>();
+        assertEquals(2, buffer.peekBatch(2, batch));
+        assertEquals(2, batch.size());
+        assertEquals(Integer.valueOf(3), batch.get(1));
+        assertEquals(3, buffer.size());
+
+        ArrayList<Integer> list = buffer.toList();
+        assertEquals(3, list.size());
+        assertEquals(Integer.valueOf(2), list.get(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        buffer.offer(1);
+        buffer.get(1);
+    }
+}
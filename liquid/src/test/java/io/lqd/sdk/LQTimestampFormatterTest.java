@@ -0,0 +1,45 @@
+package io.lqd.sdk;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQTimestampFormatterTest {
+
+    private static final String[] ZONES = {
+            "GMT", "Europe/Lisbon", "America/New_York", "America/St_Johns", "Asia/Kathmandu", "Australia/Lord_Howe", "Pacific/Chatham"
+    };
+
+    @Test
+    public void testSameFormatAsISO8601Utils() {
+        Random random = new Random(42);
+        for (String id : ZONES) {
+            TimeZone tz = TimeZone.getTimeZone(id);
+            for (int i = 0; i < 2000; ++i) {
+                // from 1850 to 2250, to go through the slow path as well
+                Date date = new Date(-3786825600000L + (long) (random.nextDouble() * 12623040000000L));
+                assertEquals(ISO8601Utils.format(date, true, tz), LQTimestampFormatter.format(date, tz));
+            }
+        }
+    }
+
+    @Test
+    public void testAroundDaylightSavingChanges() {
+        TimeZone tz = TimeZone.getTimeZone("Europe/Lisbon");
+        long start = 1459040400000L - 3600000L; // 2016-03-27T01:00:00Z, one hour before
+        for (long time = start; time < start + 2 * 3600000L; time += 61111) {
+            Date date = new Date(time);
+            assertEquals(ISO8601Utils.format(date, true, tz), LQTimestampFormatter.format(date, tz));
+        }
+    }
+
+}
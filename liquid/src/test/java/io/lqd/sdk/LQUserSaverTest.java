@@ -0,0 +1,63 @@
+package io.lqd.sdk;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+
+import io.lqd.sdk.model.LQUser;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQUserSaverTest {
+
+    private LQUser user;
+
+    @Before
+    public void setUp() {
+        user = spy(new LQUser("id", new HashMap<String, Object>(), true));
+        doNothing().when(user).save(any(Context.class), anyString());
+    }
+
+    @Test
+    public void testCoalescesSaves() throws InterruptedException {
+        LQUserSaver saver = new LQUserSaver(Robolectric.application, "le_token", 100);
+        for (int i = 0; i < 10; ++i) {
+            saver.saveLater(user);
+        }
+        assertTrue(saver.isDirty());
+        verify(user, never()).save(any(Context.class), anyString());
+
+        Thread.sleep(500);
+        assertFalse(saver.isDirty());
+        verify(user, times(1)).save(any(Context.class), anyString());
+    }
+
+    @Test
+    public void testFlushSavesRightAway() {
+        LQUserSaver saver = new LQUserSaver(Robolectric.application, "le_token", 60000);
+        saver.saveLater(user);
+        saver.flush();
+        assertFalse(saver.isDirty());
+        verify(user, times(1)).save(Robolectric.application, "le_token");
+
+        saver.flush();
+        verify(user, times(1)).save(any(Context.class), anyString());
+    }
+}
@@ -35,6 +35,24 @@ public class LiquidTest {
         assertNotEquals("new_id", lqd.getUserIdentifier()); //resets the user id
     }
 
+    @Test
+    public void testIdentifyUserWithoutAttributes() {
+        lqd.identifyUser("new_id");
+        lqd.identifyUser("other_id", false);
+        assertEquals("other_id", lqd.getUserIdentifier());
+    }
+
+    @Test
+    public void testIdentifyUserCopiesAttributes() throws NoSuchFieldException, IllegalAccessException {
+        HashMap<String, Object> attrs = new HashMap<>();
+        attrs.put("key", 1);
+        lqd.identifyUser("new_id", attrs);
+        attrs.put("key", 2);
+        Field f = Liquid.class.getDeclaredField("mCurrentUser");
+        f.setAccessible(true);
+        assertEquals(1, ((LQUser) f.get(lqd)).attributeForKey("key"));
+    }
+
     @Test
     public void testResetUserAnonymous() {
         String id = lqd.getUserIdentifier();
@@ -0,0 +1,55 @@
+package io.lqd.sdk;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class UniqueTimeTest {
+
+    private static final int THREADS = 4;
+    private static final int DATES = 10000;
+
+    @Test
+    public void testIncreasingAcrossThreads() throws InterruptedException {
+        final long[][] times = new long[THREADS][DATES];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; ++t) {
+            final long[] own = times[t];
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < DATES; ++i) {
+                        own[i] = UniqueTime.newTime();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        Set<Long> unique = new HashSet<Long>();
+        for (int t = 0; t < THREADS; ++t) {
+            threads[t].join();
+            for (int i = 0; i < DATES; ++i) {
+                if (i > 0) {
+                    assertTrue(times[t][i] > times[t][i - 1]);
+                }
+                unique.add(times[t][i]);
+            }
+        }
+        assertEquals(THREADS * DATES, unique.size());
+    }
+
+    @Test
+    public void testClockFollowsWallClock() throws InterruptedException {
+        Thread.sleep(50);
+        assertTrue(Math.abs(UniqueTime.currentTime() - System.currentTimeMillis()) < 1000);
+    }
+}
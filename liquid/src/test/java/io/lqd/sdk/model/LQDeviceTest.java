@@ -13,6 +13,8 @@ import org.robolectric.annotation.Config;
 import io.lqd.sdk.factory.FactoryGirl;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -123,4 +125,20 @@ public class LQDeviceTest {
         assertTrue(json.has("push_token"));
     }
 
+    @Test
+    public void testJSONIsCachedUntilChanged() {
+        assertSame(json, device.toJSON());
+        device.setPushId(null);
+        assertSame(json, device.toJSON());
+        device.setPushId("le_id");
+        assertNotSame(json, device.toJSON());
+    }
+
+    @Test
+    public void testSnapshotIgnoresLaterChanges() {
+        LQDevice snapshot = device.snapshot();
+        device.setPushId("le_id");
+        assertFalse(snapshot.toJSON().has("push_token"));
+    }
+
 }
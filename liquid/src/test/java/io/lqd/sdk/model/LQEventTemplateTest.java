@@ -0,0 +1,106 @@
+package io.lqd.sdk.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Date;
+import java.util.HashMap;
+
+import io.lqd.sdk.LiquidTools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQEventTemplateTest {
+
+    private static String write(LQEvent event) throws JSONException {
+        LQJsonWriter writer = new LQJsonWriter();
+        event.writeJSON(writer);
+        return writer.toString();
+    }
+
+    @Test
+    public void testWritesSameJSONAsEvent() throws JSONException {
+        Date date = new Date();
+        Date bought = new Date(date.getTime() - 60000);
+        LQEventTemplate template = new LQEventTemplate("buy \"item\"", new String[] { "price", "currency/code", "bought" }, true);
+        LQEvent templated = new LQEvent(template, template.checkValues(new Object[] { 9.99, "EUR", bought }, true), date);
+
+        HashMap<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("price", 9.99);
+        attributes.put("currency/code", "EUR");
+        attributes.put("bought", bought);
+        LQEvent event = new LQEvent("buy \"item\"", attributes, date);
+
+        JSONObject json = new JSONObject(write(templated));
+        JSONObject expected = new JSONObject(write(event));
+        assertEquals(expected.length(), json.length());
+        assertEquals(9.99, json.getDouble("price"), 0);
+        assertEquals("EUR", json.getString("currency/code"));
+        assertEquals(LiquidTools.dateToString(bought), json.getString("bought"));
+        assertEquals(expected.getString("name"), json.getString("name"));
+        assertEquals(expected.getString("date"), json.getString("date"));
+        assertEquals(expected.toString().length(), write(templated).length());
+        assertEquals(json.length(), templated.toJSON().length());
+        assertEquals("EUR", templated.toJSON().getString("currency/code"));
+    }
+
+    @Test
+    public void testSkipsNullAndInvalidValues() throws JSONException {
+        LQEventTemplate template = new LQEventTemplate("event", new String[] { "a", "b", "c" }, false);
+        Object[] values = template.checkValues(new Object[] { 1, null, new Object() }, false);
+        JSONObject json = new JSONObject(write(new LQEvent(template, values, new Date())));
+        assertEquals(1, json.getInt("a"));
+        assertFalse(json.has("b"));
+        assertFalse(json.has("c"));
+    }
+
+    @Test
+    public void testCheckValuesKeepsCallerArray() throws JSONException {
+        LQEventTemplate template = new LQEventTemplate("event", new String[] { "a", "b" }, false);
+        Object invalid = new Object();
+        Object[] values = { 1, invalid };
+        LQEvent event = new LQEvent(template, template.checkValues(values, false), new Date());
+        assertEquals(invalid, values[1]);
+
+        values[0] = 2;
+        assertEquals(1, new JSONObject(write(event)).getInt("a"));
+    }
+
+    @Test
+    public void testDropsInvalidKeys() throws JSONException {
+        LQEventTemplate template = new LQEventTemplate("event", new String[] { "a.b", "name", "c", "c" }, false);
+        Object[] values = template.checkValues(new Object[] { 1, 2, 3, 4 }, false);
+        JSONObject json = new JSONObject(write(new LQEvent(template, values, new Date())));
+        assertEquals(3, json.length());
+        assertEquals(3, json.getInt("c"));
+        assertEquals("event", json.getString("name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRaisesOnInvalidKey() {
+        new LQEventTemplate("event", new String[] { "a$" }, true);
+    }
+
+    @Test
+    public void testNames() {
+        assertEquals(LQEvent.UNNAMED_EVENT, new LQEventTemplate(null, new String[0], false).getName());
+        assertTrue(new LQEventTemplate("event", null, false).isValid());
+        assertFalse(new LQEventTemplate("_event", null, false).isValid());
+    }
+
+    @Test
+    public void testValuesMustMatchKeys() {
+        LQEventTemplate template = new LQEventTemplate("event", new String[] { "a", "b" }, false);
+        assertNull(template.checkValues(new Object[] { 1 }, false));
+        assertEquals(0, new LQEventTemplate("event", null, false).checkValues(null, false).length);
+    }
+}
@@ -0,0 +1,84 @@
+package io.lqd.sdk.model;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Date;
+import java.util.HashMap;
+
+import io.lqd.sdk.factory.FactoryGirl;
+
+import static org.junit.Assert.assertEquals;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQJsonWriterTest {
+
+    private static final Object[] VALUES = {
+            "plain", "quote \" slash / back \\ tab \t nl \n cr \r ff \f bs \b", "\u0000\u001f\u007f é",
+            0, -1, Long.MAX_VALUE, 1.5, 0.1f, 3.0, -0.0, -0.0f, 1e21, 1.0E-7, true, false, JSONObject.NULL
+    };
+
+    @Test
+    public void testSameOutputAsJSONObject() throws JSONException {
+        JSONObject expected = new JSONObject();
+        LQJsonWriter writer = LQJsonWriter.obtain();
+        writer.beginObject();
+        for (int i = 0; i < VALUES.length; ++i) {
+            expected.put("key/" + i, VALUES[i]);
+            writer.field("key/" + i, VALUES[i]);
+        }
+        JSONArray array = new JSONArray();
+        array.put(1).put("two").put(new JSONObject());
+        expected.put("array", array);
+        writer.name("array").beginArray().value(1).value("two").beginObject().endObject().endArray();
+        writer.endObject();
+
+        assertEquals(expected.toString(), writer.toString());
+    }
+
+    @Test
+    public void testModelsSameOutputAsJSONObject() throws JSONException {
+        HashMap<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put("age", 23);
+        attrs.put("name/alias", "le \"name\"");
+        attrs.put("birthday", new Date(0));
+        attrs.put("score", 2.5);
+
+        LQUser user = new LQUser("le_id", attrs, true);
+        LQJsonWriter writer = LQJsonWriter.obtain();
+        user.writeJSON(writer);
+        assertEquals(user.toJSON().toString(), writer.toString());
+
+        LQEvent event = FactoryGirl.createEvent(attrs);
+        writer = LQJsonWriter.obtain();
+        event.writeJSON(writer);
+        assertEquals(event.toJSON().toString(), writer.toString());
+
+        // reserved keys are replaced in place
+        attrs.put("name", "le_name");
+        event = FactoryGirl.createEvent(attrs);
+        writer = LQJsonWriter.obtain();
+        event.writeJSON(writer);
+        assertEquals(event.toJSON().toString(), writer.toString());
+    }
+
+    @Test
+    public void testRollbackDropsInvalidField() throws JSONException {
+        LQJsonWriter writer = LQJsonWriter.obtain();
+        writer.beginObject().field("a", 1);
+        long mark = writer.mark();
+        try {
+            writer.name("b").beginObject().field("c", 2).field("d", Double.NaN);
+        } catch (JSONException e) {
+            writer.rollback(mark);
+        }
+        writer.field("e", 3).endObject();
+        assertEquals("{\"a\":1,\"e\":3}", writer.toString());
+    }
+}
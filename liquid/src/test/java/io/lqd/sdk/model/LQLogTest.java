@@ -8,6 +8,8 @@ import org.robolectric.annotation.Config;
 import io.lqd.sdk.LQLog;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @Config(manifest = "../AndroidManifest.xml")
@@ -51,4 +53,30 @@ public class LQLogTest {
         LQLog.setLevel(LQLog.HTTP);
         assertEquals(LQLog.HTTP, LQLog.getLevel());
     }
+
+    @Test
+    public void testIsLoggable() {
+        LQLog.setLevel(LQLog.INFO);
+        assertTrue(LQLog.isLoggable(LQLog.ERROR));
+        assertTrue(LQLog.isLoggable(LQLog.INFO));
+        assertFalse(LQLog.isLoggable(LQLog.INFO_VERBOSE));
+        assertFalse(LQLog.isLoggable(LQLog.HTTP));
+    }
+
+    @Test
+    public void testDeferredFormatting() {
+        LQLog.setLevel(LQLog.WARNING);
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                fail("It shouldn't format messages of disabled levels");
+                return null;
+            }
+        };
+        LQLog.infoVerbose("Tracking: %s", argument);
+        LQLog.http("%s and %s", argument, argument);
+
+        LQLog.setLevel(LQLog.PATHS);
+        LQLog.infoVerbose("Flushing batch of %d data points", 3);
+    }
 }
@@ -11,6 +11,8 @@ import java.util.HashMap;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -140,6 +142,41 @@ public class LQModelTest {
         }
     }
 
+    @Test
+    public void testSanitizeValidAttributesReturnsSameMap() {
+        HashMap<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put(validkey, validAttributes[1]);
+        attributes.put("other_key", validAttributes[2]);
+
+        assertSame(attributes, LQModel.sanitizeAttributes(attributes, false));
+        // a second time, with the keys cached
+        assertSame(attributes, LQModel.sanitizeAttributes(attributes, false));
+    }
+
+    @Test
+    public void testSanitizeInvalidAttributesCopiesMap() {
+        HashMap<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put(validkey, validAttributes[1]);
+        attributes.put(dotkey, validAttributes[2]);
+        attributes.put("other_key", invalidAttributes[0]);
+
+        HashMap<String, Object> sanitized = LQModel.sanitizeAttributes(attributes, false);
+        assertNotSame(attributes, sanitized);
+        assertEquals(1, sanitized.size());
+        assertEquals(validAttributes[1], sanitized.get(validkey));
+        assertEquals(3, attributes.size());
+    }
+
+    @Test
+    public void testKeysSharingCacheSlot() {
+        // "Aa" and "BB" have the same hash code, so the same cache slot
+        assertTrue(LQModel.validKey("Aa", false));
+        assertTrue(LQModel.validKey("BB", false));
+        assertTrue(LQModel.validKey("Aa", false));
+        assertFalse(LQModel.validKey(dotkey, false));
+        assertFalse(LQModel.validKey(dotkey, false));
+    }
+
     // public static String newIdentifier();
 
     @Test
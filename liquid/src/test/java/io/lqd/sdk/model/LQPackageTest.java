@@ -6,10 +6,15 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import io.lqd.sdk.Examples;
 
@@ -42,4 +47,62 @@ public class LQPackageTest extends AndroidTestCase {
 
     }
 
+    @Test
+    public void testSaveAndLoadFromDisk() throws JSONException {
+        LQLiquidPackage pack = new LQLiquidPackage(new JSONObject(Examples.liquidpackage1));
+        pack.saveToDisk(Robolectric.application);
+
+        LQLiquidPackage loaded = LQLiquidPackage.loadFromDisk(Robolectric.application);
+        assertEquals(2, loaded.getValues().size());
+        for (int i = 0; i < 2; i++) {
+            LQValue expected = pack.getValues().get(i);
+            LQValue actual = loaded.getValues().get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getValue(), actual.getValue());
+            assertEquals(expected.getTargetId(), actual.getTargetId());
+            assertEquals(expected.getVariable().getName(), actual.getVariable().getName());
+            assertEquals(expected.getDataType(), actual.getDataType());
+        }
+    }
+
+    @Test
+    public void testLoadCorruptedCount() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(9);
+        header.putInt(0x4C51504B).put((byte) 1).putInt(Integer.MAX_VALUE);
+        writePackageFile(header.array());
+        assertEquals(0, LQLiquidPackage.loadFromDisk(Robolectric.application).getValues().size());
+
+        header.putInt(5, -1);
+        writePackageFile(header.array());
+        assertEquals(0, LQLiquidPackage.loadFromDisk(Robolectric.application).getValues().size());
+    }
+
+    @Test
+    public void testLoadCorruptedStringLength() throws JSONException, IOException {
+        new LQLiquidPackage(new JSONObject(Examples.liquidpackage1)).saveToDisk(Robolectric.application);
+        File file = packageFile();
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream input = new FileInputStream(file);
+        assertEquals(data.length, input.read(data));
+        input.close();
+
+        // the length of the first string, right after the header
+        ByteBuffer.wrap(data).putInt(9, Integer.MAX_VALUE);
+        writePackageFile(data);
+        assertEquals(0, LQLiquidPackage.loadFromDisk(Robolectric.application).getValues().size());
+
+        ByteBuffer.wrap(data).putInt(9, -2);
+        writePackageFile(data);
+        assertEquals(0, LQLiquidPackage.loadFromDisk(Robolectric.application).getValues().size());
+    }
+
+    private static File packageFile() {
+        return new File(Robolectric.application.getFilesDir(), "LiquidPackage.bin");
+    }
+
+    private static void writePackageFile(byte[] data) throws IOException {
+        FileOutputStream output = new FileOutputStream(packageFile());
+        output.write(data);
+        output.close();
+    }
 }
@@ -9,14 +9,22 @@ import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Date;
 
+import io.lqd.sdk.LQHttpTransport;
 import io.lqd.sdk.LQQueuer;
+import io.lqd.sdk.LQRequestFactory;
 import io.lqd.sdk.factory.FactoryGirl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
@@ -57,7 +65,7 @@ public class LQQueuerTest {
 //    }
 
     /**
-     * Test that queuer removes the successful requests and keep the bad requests to retry
+     * Test that queuer removes the successful and permanently failed requests and keep the bad requests to retry
      */
     @Test
     public void testRemoveSuccessRequests() {
@@ -80,13 +88,141 @@ public class LQQueuerTest {
         queuer.addToHttpQueue(r4);
         queuer.addToHttpQueue(r5);
         queuer.flush();
-        assertEquals(3, queuer.getQueue().size());
+        assertEquals(2, queuer.getQueue().size());
 
         for(LQNetworkRequest req : queuer.getQueue()) {
             assertEquals(1, req.getNumberOfTries());
         }
     }
 
+    /**
+     * Test that batching only coalesces data points and keeps sending other requests one by one
+     */
+    @Test
+    public void testBatchingKeepsOtherRequestsSeparated() {
+        queuer.setBatchSize(10, 1024);
+
+        LQNetworkRequest r1 = spy(FactoryGirl.createRequest());
+        LQNetworkRequest r2 = spy(FactoryGirl.createRequest());
+
+        when(r1.sendRequest("le_token")).thenReturn(new LQNetworkResponse(200));
+        when(r2.sendRequest("le_token")).thenReturn(new LQNetworkResponse(500));
+
+        queuer.addToHttpQueue(r1);
+        queuer.addToHttpQueue(r2);
+        queuer.flush();
+
+        assertEquals(1, queuer.getQueue().size());
+        assertEquals(r2, queuer.getQueue().get(0));
+    }
+
+    /**
+     * Test that requests sent concurrently are handled in the queue order
+     */
+    @Test
+    public void testConcurrentFlushKeepsOrder() {
+        queuer.setMaxInFlight(3);
+
+        ArrayList<LQNetworkRequest> requests = new ArrayList<LQNetworkRequest>();
+        for (int i = 0; i < 7; ++i) {
+            LQNetworkRequest request = spy(FactoryGirl.createRequest());
+            when(request.sendRequest("le_token")).thenReturn(new LQNetworkResponse(i % 2 == 0 ? 200 : 401));
+            requests.add(request);
+            queuer.addToHttpQueue(request);
+        }
+        queuer.flush();
+
+        assertEquals(3, queuer.getQueue().size());
+        assertSame(requests.get(1), queuer.getQueue().get(0));
+        assertSame(requests.get(3), queuer.getQueue().get(1));
+        assertSame(requests.get(5), queuer.getQueue().get(2));
+    }
+
+    @Test
+    public void testServerErrorsBackOff() {
+        LQNetworkRequest r1 = spy(FactoryGirl.createRequest());
+        LQNetworkRequest r2 = spy(FactoryGirl.createRequest());
+        when(r1.sendRequest("le_token")).thenReturn(new LQNetworkResponse(503));
+        when(r2.sendRequest("le_token")).thenReturn(new LQNetworkResponse(429, null, 120 * 1000));
+
+        queuer.addToHttpQueue(r1);
+        queuer.addToHttpQueue(r2);
+        queuer.flush();
+
+        assertEquals(2, queuer.getQueue().size());
+        assertFalse(r1.canFlush(new Date()));
+        assertTrue(r2.getNextTry().getTime() - r2.getLastTry().getTime() == 120 * 1000);
+
+        queuer.flush();
+        assertEquals(1, r1.getNumberOfTries());
+        assertEquals(1, r2.getNumberOfTries());
+    }
+
+    /**
+     * Test that a batch is retried when the server answers with fewer results than data points
+     */
+    @Test
+    public void testBatchRetriedOnResultsMismatch() throws Exception {
+        assertBatchRetried(new LQNetworkResponse(200, "{\"results\":[{\"status\":201}]}"));
+    }
+
+    /**
+     * Test that a batch is retried when the server answer can't be read
+     */
+    @Test
+    public void testBatchRetriedOnUnreadableResponse() throws Exception {
+        assertBatchRetried(new LQNetworkResponse(200, "<html>"));
+    }
+
+    /**
+     * Test that a batch is delivered when the server answers without per item results
+     */
+    @Test
+    public void testBatchDeliveredWithoutResults() throws Exception {
+        useTransportAnswering(new LQNetworkResponse(200, "{}"));
+        queuer.setBatchSize(10, 1024);
+        for (int i = 0; i < 3; ++i) {
+            queuer.addToHttpQueue(LQRequestFactory.createDataPointRequest("{\"n\":" + i + "}"));
+        }
+        queuer.flush();
+        assertEquals(0, queuer.getQueue().size());
+    }
+
+    private void assertBatchRetried(LQNetworkResponse response) throws Exception {
+        useTransportAnswering(response);
+        queuer.setBatchSize(10, 1024);
+        for (int i = 0; i < 3; ++i) {
+            queuer.addToHttpQueue(LQRequestFactory.createDataPointRequest("{\"n\":" + i + "}"));
+        }
+        queuer.flush();
+
+        assertEquals(3, queuer.getQueue().size());
+        for (LQNetworkRequest req : queuer.getQueue()) {
+            assertEquals(1, req.getNumberOfTries());
+        }
+    }
+
+    private void useTransportAnswering(LQNetworkResponse response) throws Exception {
+        LQHttpTransport transport = mock(LQHttpTransport.class);
+        ArrayList<LQNetworkResponse> responses = new ArrayList<LQNetworkResponse>();
+        responses.add(response);
+        when(transport.getMaxInFlight()).thenReturn(1);
+        when(transport.sendAll(anyListOf(LQNetworkRequest.class))).thenReturn(responses);
+        Field f = LQQueuer.class.getDeclaredField("mTransport");
+        f.setAccessible(true);
+        f.set(queuer, transport);
+    }
+
+    @Test
+    public void testInvalidBatchSize() {
+        try {
+            queuer.setBatchSize(0, 1024);
+            fail("It should throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+
+        }
+    }
+
     @Test
     public void testremoveByNumberOfTries() {
         LQNetworkRequest r1 = spy( FactoryGirl.createRequest());
@@ -127,6 +263,19 @@ public class LQQueuerTest {
         assertEquals(0, queuer.getQueue().size());
     }
 
+    @Test
+    public void testClear() {
+        queuer.addToHttpQueue(FactoryGirl.createRequest());
+        queuer.addToHttpQueue(FactoryGirl.createRequest());
+        queuer.clear();
+        assertEquals(0, queuer.getQueue().size());
+        assertEquals(0, LQQueuer.load(Robolectric.application, "le_token").getQueue().size());
 
-
+        LQNetworkRequest request = FactoryGirl.createRequest();
+        queuer.addToHttpQueue(request);
+        queuer.save(Robolectric.application, "le_token");
+        ArrayList<LQNetworkRequest> loaded = LQQueuer.load(Robolectric.application, "le_token").getQueue();
+        assertEquals(1, loaded.size());
+        assertEquals(request, loaded.get(0));
+    }
 }
@@ -12,6 +12,8 @@ import java.util.HashMap;
 
 import io.lqd.sdk.factory.FactoryGirl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
@@ -88,4 +90,16 @@ public class LQUserTest {
         assertNotNull(loaded.getAttributes());
     }
 
+    @Test
+    public void snapshotIgnoresLaterChanges() {
+        user = new LQUser("123", attrs);
+        LQUser snapshot = user.snapshot();
+        user.setAttribute("teste4", 1);
+        user.setAttribute("teste1", 2);
+
+        assertFalse(snapshot.toJSON().has("teste4"));
+        assertEquals(1, snapshot.attributeForKey("teste1"));
+        assertEquals(2, user.attributeForKey("teste1"));
+    }
+
 }
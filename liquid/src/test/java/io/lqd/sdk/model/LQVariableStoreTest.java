@@ -0,0 +1,65 @@
+package io.lqd.sdk.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@Config(manifest = "../AndroidManifest.xml")
+@RunWith(RobolectricTestRunner.class)
+public class LQVariableStoreTest {
+
+    private LQVariableStore store;
+
+    @Before
+    public void setUp() throws JSONException {
+        ArrayList<LQValue> values = new ArrayList<LQValue>();
+        values.add(createValue("count", LQVariable.INT_TYPE, "42"));
+        values.add(createValue("ratio", LQVariable.FLOAT_TYPE, 1.5));
+        values.add(createValue("enabled", LQVariable.BOOLEAN_TYPE, true));
+        values.add(createValue("background", LQVariable.COLOR_TYPE, "#ff0000"));
+        values.add(createValue("launch", LQVariable.DATE_TYPE, "2014-05-20T10:00:00Z"));
+        values.add(createValue("broken", LQVariable.INT_TYPE, "forty two"));
+        store = new LQVariableStore(values);
+    }
+
+    @Test
+    public void testParsesValuesOnce() {
+        assertEquals(42, store.get("count").getInt());
+        assertEquals(1.5f, store.get("ratio").getFloat(), 0);
+        assertTrue(store.get("enabled").getBoolean());
+        assertEquals(0xffff0000, store.get("background").getColor());
+        assertEquals(1400580000000L, store.get("launch").getDate());
+    }
+
+    @Test
+    public void testChecksTypes() {
+        assertTrue(store.get("count").is(LQVariableStore.INT));
+        assertFalse(store.get("count").is(LQVariableStore.FLOAT));
+        assertFalse(store.get("broken").is(LQVariableStore.INT));
+        assertEquals(LQVariableStore.INT, store.get("broken").getType());
+        assertNull(store.get("missing"));
+    }
+
+    private static LQValue createValue(String name, String type, Object value) throws JSONException {
+        JSONObject variable = new JSONObject();
+        variable.put("id", name + "_variable");
+        variable.put("name", name);
+        variable.put("data_type", type);
+        JSONObject json = new JSONObject();
+        json.put("id", name + "_value");
+        json.put("value", value);
+        json.put("variable", variable);
+        return new LQValue(json);
+    }
+}